@@ -0,0 +1,37 @@
+package com.github.jpthiery.arthena;
+
+import com.github.jpthiery.arthena.domain.ConfigurationKey;
+import com.github.jpthiery.arthena.domain.Environment;
+import java.util.Optional;
+
+/**
+ * Value of a {@link com.github.jpthiery.arthena.domain.Configuration} in a given {@link
+ * Environment}, resolved once and kept current as the value changes. Handles are obtained at wiring
+ * time from {@link ConfigurationValueProvider#handle(ConfigurationKey, Environment, Class)},
+ * reading them costs no lookup. A handle no longer needed, for instance one of a short-lived
+ * component, is closed to release what the provider holds to keep it current.
+ *
+ * @param <T> Type of value
+ */
+public interface ConfigurationHandle<T> extends AutoCloseable {
+
+  /**
+   * @return The configuration key of the handled value
+   */
+  ConfigurationKey key();
+
+  /**
+   * @return The environment of the handled value, <code>null</code> for the default value
+   */
+  Environment environment();
+
+  /**
+   * @return The current value, as {@link ConfigurationValueProvider#getValue(ConfigurationKey,
+   *     Environment, Class)} would provide it
+   */
+  Optional<T> get();
+
+  /** Stop keeping the value current, {@link #get()} then provides the last value resolved. */
+  @Override
+  void close();
+}
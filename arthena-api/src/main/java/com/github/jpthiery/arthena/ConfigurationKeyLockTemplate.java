@@ -3,36 +3,47 @@ package com.github.jpthiery.arthena;
 import static java.util.Objects.requireNonNull;
 
 import com.github.jpthiery.arthena.domain.ConfigurationKey;
-import java.util.HashMap;
+import com.github.jpthiery.arthena.metrics.MetricsRecorder;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Serialize operations on a same {@link ConfigurationKey}. A lock is only registered while at least
+ * one caller holds or waits for it, so the registry never grows beyond the number of keys being
+ * operated concurrently. The time spent waiting for a lock is reported to a {@link
+ * MetricsRecorder}.
+ */
 public class ConfigurationKeyLockTemplate {
 
-  private final Lock lockCreator = new ReentrantLock();
+  private final Map<ConfigurationKey, KeyLock> configurationKeyLocks;
 
-  private final Map<ConfigurationKey, Lock> configurationKeyLocks;
+  private final MetricsRecorder metricsRecorder;
 
   public interface CallbackWithoutResult {
     void run() throws Exception;
   }
 
+  public ConfigurationKeyLockTemplate(MetricsRecorder metricsRecorder) {
+    requireNonNull(metricsRecorder, "metricsRecorder must be defined");
+    this.configurationKeyLocks = new ConcurrentHashMap<>();
+    this.metricsRecorder = metricsRecorder;
+  }
+
   public ConfigurationKeyLockTemplate() {
-    configurationKeyLocks = new HashMap<>();
+    this(MetricsRecorder.NOOP);
   }
 
   public <T> T operateWithLockOnConfiguration(ConfigurationKey key, Callable<T> callback)
       throws Exception {
     requireNonNull(key, "key must be defined");
     requireNonNull(callback, "callback must be defined");
-    var lock = lockForConfigurationKey(key);
-    lock.lock();
+    var keyLock = acquire(key);
     try {
       return callback.call();
     } finally {
-      lock.unlock();
+      release(key, keyLock);
     }
   }
 
@@ -40,21 +51,40 @@ public class ConfigurationKeyLockTemplate {
       throws Exception {
     requireNonNull(key, "key must be defined");
     requireNonNull(callback, "callback must be defined");
-    var lock = lockForConfigurationKey(key);
-    lock.lock();
+    var keyLock = acquire(key);
     try {
       callback.run();
     } finally {
-      lock.unlock();
+      release(key, keyLock);
     }
   }
 
-  private Lock lockForConfigurationKey(ConfigurationKey key) {
-    lockCreator.lock();
-    try {
-      return configurationKeyLocks.computeIfAbsent(key, item -> new ReentrantLock());
-    } finally {
-      lockCreator.unlock();
-    }
+  private KeyLock acquire(ConfigurationKey key) {
+    var keyLock =
+        configurationKeyLocks.compute(
+            key,
+            (item, current) -> {
+              var registered = current == null ? new KeyLock() : current;
+              registered.users++;
+              return registered;
+            });
+    var start = System.nanoTime();
+    keyLock.lock.lock();
+    metricsRecorder.recordLockWait(System.nanoTime() - start);
+    return keyLock;
+  }
+
+  private void release(ConfigurationKey key, KeyLock keyLock) {
+    keyLock.lock.unlock();
+    configurationKeyLocks.computeIfPresent(
+        key, (item, current) -> --current.users == 0 ? null : current);
+  }
+
+  private static class KeyLock {
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Only read and written from the registry compute functions, which are atomic per key.
+    private int users;
   }
 }
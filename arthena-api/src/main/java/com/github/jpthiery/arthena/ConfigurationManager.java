@@ -4,12 +4,18 @@ import com.github.jpthiery.arthena.domain.Configuration;
 import com.github.jpthiery.arthena.domain.ConfigurationEntry;
 import com.github.jpthiery.arthena.domain.ConfigurationKey;
 import com.github.jpthiery.arthena.domain.Environment;
+import com.github.jpthiery.arthena.domain.ValueDefinition;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /** Allow to store, delete and define value of a {@link Configuration}. */
 public interface ConfigurationManager {
 
+  /** Version of a value which is not defined. */
+  long UNDEFINED_VERSION = -1;
+
   /**
    * Persist a Configuration.
    *
@@ -43,6 +49,56 @@ public interface ConfigurationManager {
       ConfigurationKey key, Environment environment, ConfigurationEntry<T> value, Class<T> tClass)
       throws ConfigurationNotFound;
 
+  /**
+   * Define the value of a Configuration only if it has not been changed since its version was
+   * read, so that concurrent writers do not overwrite each other.
+   *
+   * @param key The configuration key which value must be defined
+   * @param environment The environment to affect the value, <code>null</code> for the default value
+   * @param value The value to define
+   * @param tClass Target class of the ConfigurationEntry
+   * @param expectedVersion The version the value must still have, as provided by {@link
+   *     #valueVersion}, {@link #UNDEFINED_VERSION} for a value which must not be defined yet
+   * @param <T> Type of value
+   * @return The version of the value once defined
+   * @throws ConfigurationNotFound if the configuration key is not found.
+   * @throws ConcurrentModification if the value no longer has the expected version.
+   */
+  <T> long defineValue(
+      ConfigurationKey key,
+      Environment environment,
+      ConfigurationEntry<T> value,
+      Class<T> tClass,
+      long expectedVersion)
+      throws ConfigurationNotFound, ConcurrentModification;
+
+  /**
+   * Provide the current version of a value of a Configuration, which changes every time the value
+   * is defined.
+   *
+   * @param key The configuration key
+   * @param environment The environment of the value, <code>null</code> for the default value
+   * @return The version of the value, {@link #UNDEFINED_VERSION} if it is not defined
+   * @throws ConfigurationNotFound if the configuration key is not found.
+   */
+  long valueVersion(ConfigurationKey key, Environment environment) throws ConfigurationNotFound;
+
+  /**
+   * Define several values at once, each one checked as {@link #defineValue} does. Every value is
+   * checked before any is written, then values are written in as few transactions as possible,
+   * each transaction being applied entirely or not at all. Atomicity is per transaction, not per
+   * call: definitions too large for a single transaction are split over several ones, and when a
+   * transaction fails, the ones applied before it stay applied. When a same value is defined
+   * several times, the last definition wins.
+   *
+   * @param definitions The values to define
+   * @throws ConfigurationNotFound if the configuration key of a definition is not found, in which
+   *     case no value is written
+   * @throws IllegalArgumentException if a value is not a variant of its configuration, in which
+   *     case no value is written
+   */
+  void defineValues(Collection<ValueDefinition<?>> definitions) throws ConfigurationNotFound;
+
   /**
    * Delete a configuration.
    *
@@ -50,8 +106,31 @@ public interface ConfigurationManager {
    */
   void delete(ConfigurationKey key);
 
+  /**
+   * Delete every configuration under a key prefix, along with their values.
+   *
+   * @param prefix The key prefix, a configuration of that exact key is deleted as well
+   * @return Number of configurations deleted
+   */
+  int deletePrefix(ConfigurationKey prefix);
+
+  /**
+   * List every stored Configuration.
+   *
+   * @return Every stored Configuration, in no particular order
+   */
   List<Configuration<?>> list();
 
+  /**
+   * Stream every stored Configuration, which are fetched as the stream is consumed rather than all
+   * at once.
+   *
+   * @return Every stored Configuration, in no particular order
+   */
+  default Stream<Configuration<?>> stream() {
+    return list().stream();
+  }
+
   class ConfigurationNotFound extends Exception {
 
     private final ConfigurationKey key;
@@ -65,4 +144,18 @@ public interface ConfigurationManager {
       return key;
     }
   }
+
+  class ConcurrentModification extends Exception {
+
+    private final ConfigurationKey key;
+
+    public ConcurrentModification(ConfigurationKey key) {
+      super("Value of configuration with key " + key.key() + " has been modified concurrently");
+      this.key = key;
+    }
+
+    public ConfigurationKey getKey() {
+      return key;
+    }
+  }
 }
@@ -2,7 +2,12 @@ package com.github.jpthiery.arthena;
 
 import com.github.jpthiery.arthena.domain.ConfigurationKey;
 import com.github.jpthiery.arthena.domain.Environment;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /** Provide value for a given Configuration. */
 public interface ConfigurationValueProvider {
@@ -29,6 +34,96 @@ public interface ConfigurationValueProvider {
    */
   <T> Optional<T> getValue(ConfigurationKey key, Class<T> tClass);
 
+  /**
+   * Get value of a {@link com.github.jpthiery.arthena.domain.Configuration} following an ordered
+   * chain of {@link Environment}, for instance <code>prod-eu-west</code> then <code>prod</code>.
+   * The value of the first environment defining one is provided, then the default value, then the
+   * default variant of the Configuration.
+   *
+   * @param key The configuration key
+   * @param environments The environments to look up the value, most specific first
+   * @param tClass Target class of the value expected
+   * @return The value resolved along the environment chain.
+   * @param <T> Type of value expected
+   */
+  <T> Optional<T> getValueWithFallback(
+      ConfigurationKey key, List<Environment> environments, Class<T> tClass);
+
+  /**
+   * Get asynchronously value of a {@link com.github.jpthiery.arthena.domain.Configuration} in a
+   * given {@link Environment}, without blocking the calling thread.
+   *
+   * @param key The configuration key
+   * @param environment The environment to look up the value
+   * @param tClass Target class of the value expected
+   * @return A future completed with the value defined for a given configuration in a given
+   *     environment.
+   * @param <T> Type of value expected
+   */
+  <T> CompletableFuture<Optional<T>> getValueAsync(
+      ConfigurationKey key, Environment environment, Class<T> tClass);
+
+  /**
+   * Get asynchronously value of a {@link com.github.jpthiery.arthena.domain.Configuration}, without
+   * blocking the calling thread.
+   *
+   * @param key The configuration key
+   * @param tClass Target class of the value expected
+   * @return A future completed with the value defined for a given configuration.
+   * @param <T> Type of value expected
+   */
+  <T> CompletableFuture<Optional<T>> getValueAsync(ConfigurationKey key, Class<T> tClass);
+
+  /**
+   * Get values of several {@link com.github.jpthiery.arthena.domain.Configuration} sharing a same
+   * value type in a given {@link Environment}, read in a single batch.
+   *
+   * @param keys The configuration keys
+   * @param environment The environment to look up the values, <code>null</code> to look up the
+   *     default value
+   * @param tClass Target class of the values expected
+   * @return The value defined for each given configuration key.
+   * @param <T> Type of values expected
+   */
+  <T> Map<ConfigurationKey, Optional<T>> getValues(
+      Collection<ConfigurationKey> keys, Environment environment, Class<T> tClass);
+
+  /**
+   * Load every {@link com.github.jpthiery.arthena.domain.Configuration} under a key prefix, along
+   * with its values, into the local read state of this provider, so that first reads do not reach
+   * the configuration repository.
+   *
+   * @param prefix The key prefix, a configuration of that exact key is loaded as well
+   * @param environments Environments whose value must be loaded, the default value is always loaded
+   * @return Number of configurations loaded
+   * @throws IllegalStateException if this provider does not keep any local read state
+   */
+  int prefetch(ConfigurationKey prefix, Set<Environment> environments);
+
+  /**
+   * Provide a {@link ConfigurationHandle} on the value of a {@link
+   * com.github.jpthiery.arthena.domain.Configuration} in a given {@link Environment}, kept current
+   * as the value changes.
+   *
+   * @param key The configuration key
+   * @param environment The environment to look up the value
+   * @param tClass Target class of the value expected
+   * @return A handle on the value
+   * @param <T> Type of value expected
+   */
+  <T> ConfigurationHandle<T> handle(ConfigurationKey key, Environment environment, Class<T> tClass);
+
+  /**
+   * Provide a {@link ConfigurationHandle} on the value of a {@link
+   * com.github.jpthiery.arthena.domain.Configuration}, kept current as the value changes.
+   *
+   * @param key The configuration key
+   * @param tClass Target class of the value expected
+   * @return A handle on the value
+   * @param <T> Type of value expected
+   */
+  <T> ConfigurationHandle<T> handle(ConfigurationKey key, Class<T> tClass);
+
   /**
    * Subscribe a {@link ValueChangeListener} for a given Configuration on value defined for given
    * environment.
@@ -52,4 +147,30 @@ public interface ConfigurationValueProvider {
    */
   <T> void subscribeToValueChange(
       ConfigurationKey key, ValueChangeListener listener, Class<T> tClass);
+
+  /**
+   * Subscribe a {@link ValueChangeListener} to every value, default or of any environment, of
+   * every Configuration under a key prefix, including Configurations created later. Changes are
+   * reported through {@link ValueChangeListener#valueChange(ConfigurationKey, Environment,
+   * com.github.jpthiery.arthena.domain.ConfigurationEntry,
+   * com.github.jpthiery.arthena.domain.ConfigurationEntry)}.
+   *
+   * @param prefix The key prefix, a Configuration with this exact key is included
+   * @param listener The listener which should notify when a value changed
+   * @param tClass Target class of the values
+   * @param <T> Type of the values
+   */
+  <T> void subscribeToPrefix(
+      ConfigurationKey prefix, ValueChangeListener listener, Class<T> tClass);
+
+  /**
+   * Subscribe a {@link ValueChangeListener} to every value of every Configuration under a key
+   * prefix, values being decoded as generic objects.
+   *
+   * @param prefix The key prefix, a Configuration with this exact key is included
+   * @param listener The listener which should notify when a value changed
+   */
+  default void subscribeToPrefix(ConfigurationKey prefix, ValueChangeListener listener) {
+    subscribeToPrefix(prefix, listener, Object.class);
+  }
 }
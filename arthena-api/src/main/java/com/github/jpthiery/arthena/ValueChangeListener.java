@@ -9,7 +9,8 @@ import com.github.jpthiery.arthena.domain.Environment;
  * registered by subscribing to {@link
  * ConfigurationValueProvider#subscribeToValueChange(ConfigurationKey, ValueChangeListener, Class)}
  * or {@link ConfigurationValueProvider#subscribeToValueChange(ConfigurationKey, Environment,
- * ValueChangeListener, Class)} method.
+ * ValueChangeListener, Class)} method, or for a whole subtree of configurations with {@link
+ * ConfigurationValueProvider#subscribeToPrefix(ConfigurationKey, ValueChangeListener, Class)}.
  */
 public interface ValueChangeListener {
 
@@ -23,4 +24,22 @@ public interface ValueChangeListener {
    */
   <T> void valueChange(
       ConfigurationKey key, ConfigurationEntry<T> previous, ConfigurationEntry<T> current);
+
+  /**
+   * Called when a value for a Configuration under a subscribed prefix have changed. Delegate to
+   * {@link #valueChange(ConfigurationKey, ConfigurationEntry, ConfigurationEntry)} by default.
+   *
+   * @param key The of the configuration which value change
+   * @param environment The environment of the value, <code>null</code> for the default value
+   * @param previous The previous value of configuration, could be <code>null</code>
+   * @param current The updated value of configuration, could be <code>null</code>
+   * @param <T> Type of value provided by the Configuration
+   */
+  default <T> void valueChange(
+      ConfigurationKey key,
+      Environment environment,
+      ConfigurationEntry<T> previous,
+      ConfigurationEntry<T> current) {
+    valueChange(key, previous, current);
+  }
 }
@@ -0,0 +1,26 @@
+package com.github.jpthiery.arthena.domain;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A value to define for a {@link Configuration}, optionally for a specific {@link Environment}.
+ *
+ * @param key The configuration key which value must be defined
+ * @param environment The environment to affect the value, <code>null</code> for the default value
+ * @param value The value to define
+ * @param tClass Target class of the ConfigurationEntry
+ * @param <T> Type of value
+ */
+public record ValueDefinition<T>(
+    ConfigurationKey key, Environment environment, ConfigurationEntry<T> value, Class<T> tClass) {
+
+  public ValueDefinition {
+    requireNonNull(key, "key must be defined");
+    requireNonNull(value, "value must be defined");
+    requireNonNull(tClass, "tClass must be defined");
+  }
+
+  public ValueDefinition(ConfigurationKey key, ConfigurationEntry<T> value, Class<T> tClass) {
+    this(key, null, value, tClass);
+  }
+}
@@ -0,0 +1,115 @@
+package com.github.jpthiery.arthena.metrics;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntSupplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * {@link MetricsRecorder} keeping counts and latency histograms in memory, exposed as an MXBean
+ * through the platform MBean server once {@link #register(String)} is called.
+ */
+public class JmxMetricsRecorder implements MetricsRecorder, JmxMetricsRecorderMXBean {
+
+  /** Domain of the object names this recorder is registered with. */
+  public static final String JMX_DOMAIN = "com.github.jpthiery.arthena";
+
+  private final Map<Operation, LatencyHistogram> operations;
+
+  private final LatencyHistogram lockWait;
+
+  private final Map<Marshalling, LatencyHistogram> marshalling;
+
+  private final List<IntSupplier> activeWatchers;
+
+  public JmxMetricsRecorder() {
+    this.operations = new EnumMap<>(Operation.class);
+    for (var operation : Operation.values()) {
+      operations.put(operation, new LatencyHistogram());
+    }
+    this.lockWait = new LatencyHistogram();
+    this.marshalling = new EnumMap<>(Marshalling.class);
+    for (var item : Marshalling.values()) {
+      marshalling.put(item, new LatencyHistogram());
+    }
+    this.activeWatchers = new CopyOnWriteArrayList<>();
+  }
+
+  /**
+   * Register this recorder in the platform MBean server.
+   *
+   * @param name Name distinguishing this recorder from others of the same JVM
+   * @return The object name this recorder is registered with
+   * @throws IllegalStateException if the registration failed, for instance on a name already used
+   */
+  public ObjectName register(String name) {
+    requireNonNull(name, "name must be defined");
+    try {
+      var objectName = new ObjectName(JMX_DOMAIN + ":type=Metrics,name=" + ObjectName.quote(name));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+      return objectName;
+    } catch (JMException e) {
+      throw new IllegalStateException("Unable to register metrics " + name, e);
+    }
+  }
+
+  @Override
+  public void recordOperation(Operation operation, long durationNanos, boolean succeeded) {
+    operations.get(operation).record(durationNanos, succeeded);
+  }
+
+  @Override
+  public void recordLockWait(long durationNanos) {
+    lockWait.record(durationNanos, true);
+  }
+
+  @Override
+  public void recordMarshalling(Marshalling marshalling, long durationNanos) {
+    this.marshalling.get(marshalling).record(durationNanos, true);
+  }
+
+  /** Sources bound by several components sharing this recorder are summed up. */
+  @Override
+  public void bindActiveWatchers(IntSupplier activeWatchers) {
+    requireNonNull(activeWatchers, "activeWatchers must be defined");
+    this.activeWatchers.add(activeWatchers);
+  }
+
+  @Override
+  public void unbindActiveWatchers(IntSupplier activeWatchers) {
+    requireNonNull(activeWatchers, "activeWatchers must be defined");
+    this.activeWatchers.remove(activeWatchers);
+  }
+
+  @Override
+  public Map<String, LatencySnapshot> getOperations() {
+    var snapshots = new TreeMap<String, LatencySnapshot>();
+    operations.forEach(
+        (operation, histogram) -> snapshots.put(operation.name(), histogram.snapshot()));
+    return snapshots;
+  }
+
+  @Override
+  public LatencySnapshot getLockWait() {
+    return lockWait.snapshot();
+  }
+
+  @Override
+  public Map<String, LatencySnapshot> getMarshalling() {
+    var snapshots = new TreeMap<String, LatencySnapshot>();
+    marshalling.forEach((item, histogram) -> snapshots.put(item.name(), histogram.snapshot()));
+    return snapshots;
+  }
+
+  @Override
+  public int getActiveWatchers() {
+    return activeWatchers.stream().mapToInt(IntSupplier::getAsInt).sum();
+  }
+}
@@ -0,0 +1,19 @@
+package com.github.jpthiery.arthena.metrics;
+
+import java.util.Map;
+
+/** JMX view of a {@link JmxMetricsRecorder}. */
+public interface JmxMetricsRecorderMXBean {
+
+  /** Statistics of every operation recorded, by operation name. */
+  Map<String, LatencySnapshot> getOperations();
+
+  /** Statistics of the time spent waiting for configuration key locks. */
+  LatencySnapshot getLockWait();
+
+  /** Statistics of every conversion recorded, by conversion name. */
+  Map<String, LatencySnapshot> getMarshalling();
+
+  /** Number of watchers currently armed. */
+  int getActiveWatchers();
+}
@@ -0,0 +1,70 @@
+package com.github.jpthiery.arthena.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations, counted in buckets of power of two nanoseconds. Percentiles
+ * are approximated by the upper bound of their bucket, so within a factor of two.
+ */
+class LatencyHistogram {
+
+  private final AtomicLongArray buckets;
+
+  private final LongAdder count;
+
+  private final LongAdder errors;
+
+  private final LongAdder totalNanos;
+
+  private final LongAccumulator maxNanos;
+
+  LatencyHistogram() {
+    this.buckets = new AtomicLongArray(Long.SIZE);
+    this.count = new LongAdder();
+    this.errors = new LongAdder();
+    this.totalNanos = new LongAdder();
+    this.maxNanos = new LongAccumulator(Math::max, 0);
+  }
+
+  void record(long durationNanos, boolean succeeded) {
+    var duration = Math.max(0, durationNanos);
+    buckets.incrementAndGet(Long.SIZE - 1 - Long.numberOfLeadingZeros(duration | 1));
+    count.increment();
+    totalNanos.add(duration);
+    maxNanos.accumulate(duration);
+    if (!succeeded) {
+      errors.increment();
+    }
+  }
+
+  LatencySnapshot snapshot() {
+    var counts = new long[buckets.length()];
+    var total = 0L;
+    for (var index = 0; index < counts.length; index++) {
+      counts[index] = buckets.get(index);
+      total += counts[index];
+    }
+    return new LatencySnapshot(
+        total,
+        errors.sum(),
+        total == 0 ? 0 : totalNanos.sum() / total / 1000.0,
+        percentileMicros(counts, total, 0.5),
+        percentileMicros(counts, total, 0.99),
+        maxNanos.get() / 1000.0);
+  }
+
+  private static double percentileMicros(long[] counts, long total, double quantile) {
+    var rank = (long) Math.ceil(total * quantile);
+    var cumulated = 0L;
+    for (var index = 0; index < counts.length; index++) {
+      cumulated += counts[index];
+      if (cumulated >= rank && cumulated > 0) {
+        // Upper bound of the bucket, durations in it are below 2^(index + 1) nanoseconds.
+        return Math.scalb(1.0, index + 1) / 1000.0;
+      }
+    }
+    return 0;
+  }
+}
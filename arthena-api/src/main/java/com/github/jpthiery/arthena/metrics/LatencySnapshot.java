@@ -0,0 +1,79 @@
+package com.github.jpthiery.arthena.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Statistics of recorded durations at a point in time, exposed through JMX as composite data.
+ * Durations are in microseconds, percentiles are approximated within a factor of two.
+ */
+public class LatencySnapshot {
+
+  private final long count;
+
+  private final long errors;
+
+  private final double meanMicros;
+
+  private final double p50Micros;
+
+  private final double p99Micros;
+
+  private final double maxMicros;
+
+  @ConstructorProperties({"count", "errors", "meanMicros", "p50Micros", "p99Micros", "maxMicros"})
+  public LatencySnapshot(
+      long count,
+      long errors,
+      double meanMicros,
+      double p50Micros,
+      double p99Micros,
+      double maxMicros) {
+    this.count = count;
+    this.errors = errors;
+    this.meanMicros = meanMicros;
+    this.p50Micros = p50Micros;
+    this.p99Micros = p99Micros;
+    this.maxMicros = maxMicros;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getErrors() {
+    return errors;
+  }
+
+  public double getMeanMicros() {
+    return meanMicros;
+  }
+
+  public double getP50Micros() {
+    return p50Micros;
+  }
+
+  public double getP99Micros() {
+    return p99Micros;
+  }
+
+  public double getMaxMicros() {
+    return maxMicros;
+  }
+
+  @Override
+  public String toString() {
+    return "LatencySnapshot{count="
+        + count
+        + ", errors="
+        + errors
+        + ", meanMicros="
+        + meanMicros
+        + ", p50Micros="
+        + p50Micros
+        + ", p99Micros="
+        + p99Micros
+        + ", maxMicros="
+        + maxMicros
+        + '}';
+  }
+}
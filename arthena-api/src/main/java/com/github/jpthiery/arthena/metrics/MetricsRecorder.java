@@ -0,0 +1,71 @@
+package com.github.jpthiery.arthena.metrics;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Receive measures of the operations run by Arthena against its configuration repository. Every
+ * method does nothing by default, an implementation only overrides what it records. Methods are
+ * called from any thread, including the repository client event thread, and must not block.
+ */
+public interface MetricsRecorder {
+
+  /** A recorder which ignores every measure. */
+  MetricsRecorder NOOP = new MetricsRecorder() {};
+
+  /** Operations sent to the configuration repository. */
+  enum Operation {
+    EXISTS,
+    GET_DATA,
+    CREATE,
+    SET_DATA,
+    DELETE,
+    GET_CHILDREN,
+    MULTI,
+    ADD_WATCH
+  }
+
+  /** Conversions between configurations and the bytes stored in the repository. */
+  enum Marshalling {
+    ENCODE,
+    DECODE
+  }
+
+  /**
+   * Record an operation sent to the configuration repository.
+   *
+   * @param operation The operation
+   * @param durationNanos Time between the request and its answer
+   * @param succeeded Whether the repository answered without error
+   */
+  default void recordOperation(Operation operation, long durationNanos, boolean succeeded) {}
+
+  /**
+   * Record the time spent waiting for the lock of a configuration key.
+   *
+   * @param durationNanos Time between the lock request and its acquisition
+   */
+  default void recordLockWait(long durationNanos) {}
+
+  /**
+   * Record a conversion of a configuration or of a value.
+   *
+   * @param marshalling The conversion
+   * @param durationNanos Time spent converting
+   */
+  default void recordMarshalling(Marshalling marshalling, long durationNanos) {}
+
+  /**
+   * Bind the source of the number of watchers currently armed, read whenever the recorder reports
+   * it.
+   *
+   * @param activeWatchers Provide the number of watchers currently armed
+   */
+  default void bindActiveWatchers(IntSupplier activeWatchers) {}
+
+  /**
+   * Unbind a source of the number of watchers currently armed, once its component is closed.
+   *
+   * @param activeWatchers A source previously given to {@link #bindActiveWatchers}
+   */
+  default void unbindActiveWatchers(IntSupplier activeWatchers) {}
+}
@@ -0,0 +1,98 @@
+package com.github.jpthiery.arthena.benchmarks;
+
+import com.github.jpthiery.arthena.domain.Configuration;
+import com.github.jpthiery.arthena.domain.ConfigurationEntry;
+import com.github.jpthiery.arthena.domain.ConfigurationKey;
+import com.github.jpthiery.arthena.zookeeper.CompressingDataMarshaller;
+import com.github.jpthiery.arthena.zookeeper.DataMarshaller;
+import com.github.jpthiery.arthena.zookeeper.json.JsonDataMarshaller;
+import com.github.jpthiery.arthena.zookeeper.json.SmileDataMarshaller;
+import com.github.jpthiery.arthena.zookeeper.json.StreamingJsonDataMarshaller;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Payload size against decode time of large configurations, with and without {@link
+ * CompressingDataMarshaller}. The payload size is reported as the <code>payloadBytes</code>
+ * secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+  @Param({"16", "512"})
+  int variantCount;
+
+  @Param({"json", "smile"})
+  String format;
+
+  @Param({"false", "true"})
+  boolean compressed;
+
+  private DataMarshaller marshaller;
+
+  private byte[] payload;
+
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class PayloadSize {
+
+    public long payloadBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      payloadBytes = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    DataMarshaller formatMarshaller =
+        format.equals("smile") ? new SmileDataMarshaller() : new StreamingJsonDataMarshaller();
+    marshaller = compressed ? new CompressingDataMarshaller(formatMarshaller) : formatMarshaller;
+    var variants = new ArrayList<ConfigurationEntry<String>>();
+    for (var i = 0; i < variantCount; i++) {
+      variants.add(
+          new ConfigurationEntry<>(
+              "variant" + i,
+              "jdbc:postgresql://db-" + i + ".internal:5432/app",
+              "Connection string of the database serving the shard number " + i));
+    }
+    var configuration =
+        new Configuration<>(
+            new ConfigurationKey("my.app.datasource"),
+            "Datasource",
+            Collections.emptyMap(),
+            variants,
+            variants.getFirst());
+    // Uncompressed Json is stored pretty printed, as by ZookeeperConfigurationManager
+    payload =
+        compressed || format.equals("smile")
+            ? marshaller.toByteArray(configuration)
+            : new JsonDataMarshaller().toByteArray(configuration);
+  }
+
+  @Benchmark
+  public Configuration<String> decode(PayloadSize payloadSize) {
+    payloadSize.payloadBytes = payload.length;
+    return marshaller.configurationFromByteArray(payload, String.class);
+  }
+}
@@ -0,0 +1,55 @@
+package com.github.jpthiery.arthena.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+
+/**
+ * A Zookeeper server running in-process on a random port, started the same way the tests of
+ * arthena-zookeeper do, along with the sessions opened on it.
+ */
+class EmbeddedZookeeper implements AutoCloseable {
+
+  private final ServerCnxnFactory serverFactory;
+
+  private EmbeddedZookeeper(ServerCnxnFactory serverFactory) {
+    this.serverFactory = serverFactory;
+  }
+
+  static EmbeddedZookeeper start() throws IOException, InterruptedException {
+    var dataDirectory = Files.createTempDirectory("benchmark_zookeeper_").toFile();
+    var server = new ZooKeeperServer(dataDirectory, dataDirectory, 200);
+    var serverFactory = ServerCnxnFactory.createFactory(0, 5000);
+    serverFactory.startup(server);
+    return new EmbeddedZookeeper(serverFactory);
+  }
+
+  /** Open a session on the server, caller is in charge to close it. */
+  ZooKeeper connect() throws IOException, InterruptedException {
+    var latch = new CountDownLatch(1);
+    var zooKeeper =
+        new ZooKeeper(
+            "localhost:" + serverFactory.getLocalPort(),
+            5000,
+            event -> {
+              if (event.getState() == Watcher.Event.KeeperState.SyncConnected) {
+                latch.countDown();
+              }
+            });
+    if (!latch.await(5, TimeUnit.SECONDS)) {
+      zooKeeper.close();
+      throw new IOException("Unable to connect to embedded Zookeeper server");
+    }
+    return zooKeeper;
+  }
+
+  @Override
+  public void close() {
+    serverFactory.shutdown();
+  }
+}
@@ -0,0 +1,96 @@
+package com.github.jpthiery.arthena.benchmarks;
+
+import com.github.jpthiery.arthena.domain.Configuration;
+import com.github.jpthiery.arthena.domain.ConfigurationEntry;
+import com.github.jpthiery.arthena.domain.ConfigurationKey;
+import com.github.jpthiery.arthena.domain.Environment;
+import com.github.jpthiery.arthena.zookeeper.ValueProviderOptions;
+import com.github.jpthiery.arthena.zookeeper.ZookeeperConfigurationManager;
+import com.github.jpthiery.arthena.zookeeper.ZookeeperConfigurationValueProvider;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.apache.zookeeper.ZooKeeper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads of a value against an embedded Zookeeper server. Hot reads are served by the value cache,
+ * cold ones reach Zookeeper on every call, checking node existences first or sending getData
+ * requests directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetValueBenchmark {
+
+  private static final ConfigurationEntry<Boolean> ON =
+      new ConfigurationEntry<>("on", Boolean.TRUE, "Flag is on");
+
+  private static final ConfigurationEntry<Boolean> OFF =
+      new ConfigurationEntry<>("off", Boolean.FALSE, "Flag is off");
+
+  private static final Environment PROD = new Environment("prod");
+
+  @Param({"hot", "cold"})
+  String cache;
+
+  @Param({"false", "true"})
+  boolean directRequests;
+
+  private EmbeddedZookeeper server;
+
+  private ZooKeeper zooKeeper;
+
+  private ZookeeperConfigurationValueProvider provider;
+
+  private ConfigurationKey key;
+
+  @Setup
+  public void setUp() throws Exception {
+    server = EmbeddedZookeeper.start();
+    zooKeeper = server.connect();
+    key = new ConfigurationKey("my.app.benchmark");
+    var manager = new ZookeeperConfigurationManager(zooKeeper);
+    manager.store(
+        new Configuration<>(key, "Flag", Collections.emptyMap(), List.of(ON, OFF), ON));
+    manager.defineValue(key, PROD, OFF, Boolean.class);
+    provider =
+        new ZookeeperConfigurationValueProvider(
+            zooKeeper,
+            null,
+            ValueProviderOptions.defaults()
+                .withCacheValues(cache.equals("hot"))
+                .withDirectRequests(directRequests));
+  }
+
+  @TearDown
+  public void tearDown() throws InterruptedException {
+    zooKeeper.close();
+    server.close();
+  }
+
+  @Benchmark
+  public Optional<Boolean> getDefaultValue() {
+    return provider.getValue(key, Boolean.class);
+  }
+
+  @Benchmark
+  public Optional<Boolean> getEnvironmentValue() {
+    return provider.getValue(key, PROD, Boolean.class);
+  }
+}
@@ -0,0 +1,110 @@
+package com.github.jpthiery.arthena.benchmarks;
+
+import com.github.jpthiery.arthena.domain.Configuration;
+import com.github.jpthiery.arthena.domain.ConfigurationEntry;
+import com.github.jpthiery.arthena.domain.ConfigurationKey;
+import com.github.jpthiery.arthena.zookeeper.DataMarshaller;
+import com.github.jpthiery.arthena.zookeeper.json.JsonDataMarshaller;
+import com.github.jpthiery.arthena.zookeeper.json.SmileDataMarshaller;
+import com.github.jpthiery.arthena.zookeeper.json.StreamingJsonDataMarshaller;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding and decoding of configurations by the Json {@link DataMarshaller} implementations,
+ * depending on their variant count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonDataMarshallerBenchmark {
+
+  public enum Level {
+    TRACE,
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR
+  }
+
+  @Param({"2", "16", "128"})
+  int variantCount;
+
+  @Param({"tree", "streaming", "smile"})
+  String marshallerType;
+
+  private DataMarshaller marshaller;
+
+  private byte[] enumConfiguration;
+
+  private byte[] booleanConfiguration;
+
+  private byte[] enumEntry;
+
+  private Configuration<Level> enumConfigurationValue;
+
+  @Setup
+  public void setUp() {
+    marshaller =
+        switch (marshallerType) {
+          case "streaming" -> new StreamingJsonDataMarshaller();
+          case "smile" -> new SmileDataMarshaller();
+          default -> new JsonDataMarshaller();
+        };
+    var levels = Level.values();
+    var enumVariants = new ArrayList<ConfigurationEntry<Level>>();
+    var booleanVariants = new ArrayList<ConfigurationEntry<Boolean>>();
+    for (var i = 0; i < variantCount; i++) {
+      enumVariants.add(
+          new ConfigurationEntry<>("variant" + i, levels[i % levels.length], "Variant " + i));
+      booleanVariants.add(new ConfigurationEntry<>("variant" + i, i % 2 == 0, "Variant " + i));
+    }
+    var key = new ConfigurationKey("my.app.benchmark");
+    // Json data is written pretty printed, as stored by ZookeeperConfigurationManager
+    var writer = marshallerType.equals("smile") ? marshaller : new JsonDataMarshaller();
+    enumConfigurationValue =
+        new Configuration<>(
+            key, "Level", Collections.emptyMap(), enumVariants, enumVariants.getFirst());
+    enumConfiguration = writer.toByteArray(enumConfigurationValue);
+    booleanConfiguration =
+        writer.toByteArray(
+            new Configuration<>(
+                key, "Flag", Collections.emptyMap(), booleanVariants, booleanVariants.getFirst()));
+    enumEntry = writer.toByteArray(enumVariants.getLast());
+  }
+
+  @Benchmark
+  public Configuration<Level> decodeEnumConfiguration() {
+    return marshaller.configurationFromByteArray(enumConfiguration, Level.class);
+  }
+
+  @Benchmark
+  public Configuration<Boolean> decodeBooleanConfiguration() {
+    return marshaller.configurationFromByteArray(booleanConfiguration, Boolean.class);
+  }
+
+  @Benchmark
+  public ConfigurationEntry<Level> decodeEnumEntry() {
+    return marshaller.configurationEntryFromByteArray(enumEntry, Level.class);
+  }
+
+  @Benchmark
+  public byte[] encodeEnumConfiguration() {
+    return marshaller.toByteArray(enumConfigurationValue);
+  }
+}
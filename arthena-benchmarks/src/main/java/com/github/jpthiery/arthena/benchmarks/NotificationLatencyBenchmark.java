@@ -0,0 +1,99 @@
+package com.github.jpthiery.arthena.benchmarks;
+
+import com.github.jpthiery.arthena.ConfigurationManager.ConfigurationNotFound;
+import com.github.jpthiery.arthena.ValueChangeListener;
+import com.github.jpthiery.arthena.domain.Configuration;
+import com.github.jpthiery.arthena.domain.ConfigurationEntry;
+import com.github.jpthiery.arthena.domain.ConfigurationKey;
+import com.github.jpthiery.arthena.zookeeper.ZookeeperConfigurationManager;
+import com.github.jpthiery.arthena.zookeeper.ZookeeperConfigurationValueProvider;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.apache.zookeeper.ZooKeeper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency from a value written by a manager to its notification to a {@link ValueChangeListener}
+ * subscribed on another Zookeeper session.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationLatencyBenchmark {
+
+  private static final ConfigurationEntry<Boolean> ON =
+      new ConfigurationEntry<>("on", Boolean.TRUE, "Flag is on");
+
+  private static final ConfigurationEntry<Boolean> OFF =
+      new ConfigurationEntry<>("off", Boolean.FALSE, "Flag is off");
+
+  private EmbeddedZookeeper server;
+
+  private ZooKeeper writerZooKeeper;
+
+  private ZooKeeper readerZooKeeper;
+
+  private ZookeeperConfigurationManager manager;
+
+  private ConfigurationKey key;
+
+  private Semaphore notified;
+
+  private boolean on;
+
+  @Setup
+  public void setUp() throws Exception {
+    server = EmbeddedZookeeper.start();
+    writerZooKeeper = server.connect();
+    readerZooKeeper = server.connect();
+    key = new ConfigurationKey("my.app.benchmark");
+    manager = new ZookeeperConfigurationManager(writerZooKeeper);
+    manager.store(
+        new Configuration<>(key, "Flag", Collections.emptyMap(), List.of(ON, OFF), ON));
+    notified = new Semaphore(0);
+    new ZookeeperConfigurationValueProvider(readerZooKeeper)
+        .subscribeToValueChange(
+            key,
+            new ValueChangeListener() {
+              @Override
+              public <T> void valueChange(
+                  ConfigurationKey key,
+                  ConfigurationEntry<T> previous,
+                  ConfigurationEntry<T> current) {
+                notified.release();
+              }
+            },
+            Boolean.class);
+  }
+
+  @TearDown
+  public void tearDown() throws InterruptedException {
+    readerZooKeeper.close();
+    writerZooKeeper.close();
+    server.close();
+  }
+
+  @Benchmark
+  public void writeToNotification() throws ConfigurationNotFound, InterruptedException {
+    on = !on;
+    manager.defineValue(key, on ? OFF : ON, Boolean.class);
+    if (!notified.tryAcquire(5, TimeUnit.SECONDS)) {
+      throw new IllegalStateException("Change of " + key.key() + " not notified");
+    }
+  }
+}
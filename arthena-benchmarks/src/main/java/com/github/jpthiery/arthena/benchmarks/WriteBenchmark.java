@@ -0,0 +1,123 @@
+package com.github.jpthiery.arthena.benchmarks;
+
+import com.github.jpthiery.arthena.ConfigurationManager.ConfigurationNotFound;
+import com.github.jpthiery.arthena.domain.Configuration;
+import com.github.jpthiery.arthena.domain.ConfigurationEntry;
+import com.github.jpthiery.arthena.domain.ConfigurationKey;
+import com.github.jpthiery.arthena.domain.Environment;
+import com.github.jpthiery.arthena.domain.ValueDefinition;
+import com.github.jpthiery.arthena.zookeeper.ZookeeperConfigurationManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.zookeeper.ZooKeeper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writes of configurations and values against an embedded Zookeeper server. Each stored
+ * configuration has a new key, values alternate between two variants of a same configuration. The
+ * values of {@value #RELEASE_SIZE} configurations are also defined one by one and in a batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark {
+
+  private static final ConfigurationEntry<Boolean> ON =
+      new ConfigurationEntry<>("on", Boolean.TRUE, "Flag is on");
+
+  private static final ConfigurationEntry<Boolean> OFF =
+      new ConfigurationEntry<>("off", Boolean.FALSE, "Flag is off");
+
+  private static final Environment PROD = new Environment("prod");
+
+  private static final int RELEASE_SIZE = 200;
+
+  private EmbeddedZookeeper server;
+
+  private ZooKeeper zooKeeper;
+
+  private ZookeeperConfigurationManager manager;
+
+  private ConfigurationKey key;
+
+  private List<ConfigurationKey> releaseKeys;
+
+  private long storedCount;
+
+  private boolean on;
+
+  @Setup
+  public void setUp() throws Exception {
+    server = EmbeddedZookeeper.start();
+    zooKeeper = server.connect();
+    manager = new ZookeeperConfigurationManager(zooKeeper);
+    key = new ConfigurationKey("my.app.benchmark");
+    manager.store(configuration(key));
+    releaseKeys = new ArrayList<>(RELEASE_SIZE);
+    for (var i = 0; i < RELEASE_SIZE; i++) {
+      var releaseKey = new ConfigurationKey("my.app.release" + i);
+      manager.store(configuration(releaseKey));
+      releaseKeys.add(releaseKey);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws InterruptedException {
+    zooKeeper.close();
+    server.close();
+  }
+
+  @Benchmark
+  public void store() {
+    manager.store(configuration(new ConfigurationKey("my.app.stored" + storedCount++)));
+  }
+
+  @Benchmark
+  public void defineValue() throws ConfigurationNotFound {
+    on = !on;
+    manager.defineValue(key, on ? ON : OFF, Boolean.class);
+  }
+
+  @Benchmark
+  public void defineEnvironmentValue() throws ConfigurationNotFound {
+    on = !on;
+    manager.defineValue(key, PROD, on ? ON : OFF, Boolean.class);
+  }
+
+  @Benchmark
+  public void defineReleaseValuesOneByOne() throws ConfigurationNotFound {
+    on = !on;
+    for (var releaseKey : releaseKeys) {
+      manager.defineValue(releaseKey, PROD, on ? ON : OFF, Boolean.class);
+    }
+  }
+
+  @Benchmark
+  public void defineReleaseValuesInBatch() throws ConfigurationNotFound {
+    on = !on;
+    var definitions = new ArrayList<ValueDefinition<?>>(RELEASE_SIZE);
+    for (var releaseKey : releaseKeys) {
+      definitions.add(new ValueDefinition<>(releaseKey, PROD, on ? ON : OFF, Boolean.class));
+    }
+    manager.defineValues(definitions);
+  }
+
+  private static Configuration<Boolean> configuration(ConfigurationKey key) {
+    return new Configuration<>(key, "Flag", Collections.emptyMap(), List.of(ON, OFF), ON);
+  }
+}
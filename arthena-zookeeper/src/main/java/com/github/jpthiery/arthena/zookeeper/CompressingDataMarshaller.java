@@ -0,0 +1,139 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import static java.util.Objects.requireNonNull;
+
+import com.github.jpthiery.arthena.domain.Configuration;
+import com.github.jpthiery.arthena.domain.ConfigurationEntry;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * {@link DataMarshaller} which deflates payloads of another one once they reach a size threshold.
+ * A compressed payload starts with a marker byte, which can start neither a Json nor a Smile
+ * payload, a codec byte and the uncompressed length. Other payloads are stored as the delegate
+ * wrote them, so data written before compression was enabled stays readable.
+ */
+public class CompressingDataMarshaller implements DataMarshaller {
+
+  public static final int DEFAULT_THRESHOLD = 1024;
+
+  static final byte MARKER = (byte) 0xA7;
+
+  static final byte DEFLATE = 0x01;
+
+  private static final int HEADER_LENGTH = 6;
+
+  /** Largest uncompressed length accepted from a header, any larger one is corrupt. */
+  static final int MAX_UNCOMPRESSED_LENGTH = 64 * 1024 * 1024;
+
+  /** Deflate can not shrink data by more than this ratio, a larger one is corrupt. */
+  private static final int MAX_DEFLATE_RATIO = 1032;
+
+  private final DataMarshaller delegate;
+
+  private final int threshold;
+
+  /**
+   * @param delegate Marshaller writing payloads before compression
+   * @param threshold Size in bytes from which a payload is compressed
+   */
+  public CompressingDataMarshaller(DataMarshaller delegate, int threshold) {
+    requireNonNull(delegate, "delegate must be defined");
+    if (threshold < 0) {
+      throw new IllegalArgumentException("threshold must be positive");
+    }
+    this.delegate = delegate;
+    this.threshold = threshold;
+  }
+
+  public CompressingDataMarshaller(DataMarshaller delegate) {
+    this(delegate, DEFAULT_THRESHOLD);
+  }
+
+  @Override
+  public <T> Configuration<T> configurationFromByteArray(byte[] data, Class<T> tClass) {
+    return delegate.configurationFromByteArray(decompress(data), tClass);
+  }
+
+  @Override
+  public <T> ConfigurationEntry<T> configurationEntryFromByteArray(byte[] data, Class<T> tClass) {
+    return delegate.configurationEntryFromByteArray(decompress(data), tClass);
+  }
+
+  @Override
+  public <T> byte[] toByteArray(Configuration<T> configuration) {
+    return compress(delegate.toByteArray(configuration));
+  }
+
+  @Override
+  public <T> byte[] toByteArray(ConfigurationEntry<T> configurationEntry) {
+    return compress(delegate.toByteArray(configurationEntry));
+  }
+
+  private byte[] compress(byte[] data) {
+    if (data.length < threshold) {
+      return data;
+    }
+    var deflater = new Deflater();
+    try {
+      deflater.setInput(data);
+      deflater.finish();
+      var output = new ByteArrayOutputStream(data.length / 2 + HEADER_LENGTH);
+      output.write(MARKER);
+      output.write(DEFLATE);
+      output.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(data.length).array());
+      var buffer = new byte[Math.min(data.length, 8192)];
+      while (!deflater.finished()) {
+        output.write(buffer, 0, deflater.deflate(buffer));
+      }
+      // Payloads which do not shrink are kept as they are
+      return output.size() < data.length ? output.toByteArray() : data;
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] decompress(byte[] data) {
+    if (data == null || data.length < HEADER_LENGTH || data[0] != MARKER) {
+      return data;
+    }
+    if (data[1] != DEFLATE) {
+      throw new IllegalArgumentException("Unknown compression codec " + data[1]);
+    }
+    var length = ByteBuffer.wrap(data, 2, Integer.BYTES).getInt();
+    if (length < 0
+        || length > MAX_UNCOMPRESSED_LENGTH
+        || length > (long) (data.length - HEADER_LENGTH) * MAX_DEFLATE_RATIO) {
+      throw new IllegalArgumentException("Invalid uncompressed length " + length);
+    }
+    var inflater = new Inflater();
+    try {
+      inflater.setInput(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+      var output = new byte[length];
+      var read = 0;
+      while (read < length && !inflater.finished()) {
+        var inflated = inflater.inflate(output, read, length - read);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        read += inflated;
+      }
+      if (read != length) {
+        throw new IllegalArgumentException(
+            "Compressed payload is truncated, " + read + " of " + length + " bytes inflated");
+      }
+      if (!inflater.finished()) {
+        throw new IllegalArgumentException(
+            "Compressed payload inflates beyond its length of " + length + " bytes");
+      }
+      return output;
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("Unable to inflate compressed payload", e);
+    } finally {
+      inflater.end();
+    }
+  }
+}
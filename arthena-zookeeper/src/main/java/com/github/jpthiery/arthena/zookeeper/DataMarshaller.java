@@ -11,7 +11,7 @@ public interface DataMarshaller {
    *
    * @param data The source
    * @param tClass Type a Value provided by the configuration
-   * @return A Configuration
+   * @return A Configuration, or <code>null</code> if data is empty
    * @param <T> Type of value provided by Configuration
    */
   <T> Configuration<T> configurationFromByteArray(byte[] data, Class<T> tClass);
@@ -21,7 +21,7 @@ public interface DataMarshaller {
    *
    * @param data The source
    * @param tClass Type a Value provided by the configuration entry
-   * @return A ConfigurationEntry
+   * @return A ConfigurationEntry, or <code>null</code> if data is empty
    * @param <T> Type of value provided by ConfigurationEntry
    */
   <T> ConfigurationEntry<T> configurationEntryFromByteArray(byte[] data, Class<T> tClass);
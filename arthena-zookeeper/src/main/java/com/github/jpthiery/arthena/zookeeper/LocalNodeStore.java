@@ -0,0 +1,245 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import static java.util.Objects.requireNonNull;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.slf4j.Logger;
+
+/**
+ * Local copy of the nodes read by a provider, each one kept current by an exists watch, so a node
+ * is only read again from Zookeeper once it changed. Absent nodes are kept too.
+ *
+ * <p>Nodes can be restored from a snapshot, they are then served right away, before being
+ * reconciled in background against Zookeeper by comparing their <code>mzxid</code>. A node which
+ * cannot be reconciled, for instance while Zookeeper is unreachable, keeps being served and is
+ * reconciled again later.
+ *
+ * <p>Nodes are never evicted: the store holds every distinct node the provider read, absent ones
+ * included, and its size is bounded by the set of configurations the application reads.
+ */
+class LocalNodeStore implements Watcher {
+
+  private static final Logger LOGGER = getLogger(LocalNodeStore.class);
+
+  /**
+   * @param content Content of the node, <code>null</code> when it must be read again
+   * @param generation Number of changes notified on the node, a read only publishes its content
+   *     when no change was notified since it started
+   */
+  private record Entry(ZookeeperClient.NodeContent content, long generation) {
+
+    private static final Entry UNKNOWN = new Entry(null, 0);
+
+    Entry changed() {
+      return new Entry(null, generation + 1);
+    }
+  }
+
+  private final ZookeeperClient zookeeperClient;
+
+  private final Consumer<String> changeListener;
+
+  private final Map<String, Entry> entries;
+
+  private final Set<String> unreconciled;
+
+  private volatile boolean closed;
+
+  /**
+   * @param changeListener Called with the full path of a node once its local copy changed
+   */
+  LocalNodeStore(ZookeeperClient zookeeperClient, Consumer<String> changeListener) {
+    requireNonNull(zookeeperClient, "zookeeperClient must be defined");
+    requireNonNull(changeListener, "changeListener must be defined");
+    this.zookeeperClient = zookeeperClient;
+    this.changeListener = changeListener;
+    this.entries = new ConcurrentHashMap<>();
+    this.unreconciled = ConcurrentHashMap.newKeySet();
+  }
+
+  /** Read a node, from Zookeeper only if its local copy is not current. */
+  ZookeeperClient.NodeContent read(ZnodePath path) {
+    var fullPath = fullPath(path);
+    var entry = entries.getOrDefault(fullPath, Entry.UNKNOWN);
+    if (entry.content() != null) {
+      return entry.content();
+    }
+    var stat = zookeeperClient.exist(path, this);
+    var content =
+        stat == null ? ZookeeperClient.NodeContent.ABSENT : zookeeperClient.getNodeContent(path);
+    publish(fullPath, entry.generation(), content);
+    return content;
+  }
+
+  /**
+   * Read several nodes, those without a current local copy are read from Zookeeper with a single
+   * multi read. Contents are provided in the same order as the given paths.
+   */
+  List<ZookeeperClient.NodeContent> readAll(List<ZnodePath> paths) {
+    var contents = new ArrayList<ZookeeperClient.NodeContent>(paths.size());
+    var missingIndexes = new ArrayList<Integer>();
+    var missingPaths = new ArrayList<ZnodePath>();
+    var generations = new ArrayList<Long>();
+    for (var path : paths) {
+      var entry = entries.getOrDefault(fullPath(path), Entry.UNKNOWN);
+      if (entry.content() == null) {
+        missingIndexes.add(contents.size());
+        missingPaths.add(path);
+        generations.add(entry.generation());
+      }
+      contents.add(entry.content());
+    }
+    if (missingPaths.isEmpty()) {
+      return contents;
+    }
+    var watchesArmed = zookeeperClient.watchAll(missingPaths, this);
+    var missingContents = zookeeperClient.getNodeContents(missingPaths);
+    watchesArmed.join();
+    for (var index = 0; index < missingPaths.size(); index++) {
+      var content = missingContents.get(index);
+      publish(fullPath(missingPaths.get(index)), generations.get(index), content);
+      contents.set(missingIndexes.get(index), content);
+    }
+    return contents;
+  }
+
+  /**
+   * @return The current local copy of a node, <code>null</code> if it must be read from Zookeeper
+   */
+  ZookeeperClient.NodeContent getIfPresent(ZnodePath path) {
+    return entries.getOrDefault(fullPath(path), Entry.UNKNOWN).content();
+  }
+
+  /** Number of nodes stored locally, each one kept current by a watch once read. */
+  int size() {
+    return entries.size();
+  }
+
+  /** Current local copies of nodes, keyed by full path. */
+  Map<String, ZookeeperClient.NodeContent> contents() {
+    var contents = new HashMap<String, ZookeeperClient.NodeContent>();
+    entries.forEach(
+        (fullPath, entry) -> {
+          if (entry.content() != null) {
+            contents.put(fullPath, entry.content());
+          }
+        });
+    return contents;
+  }
+
+  /** Restore nodes, which are served right away and reconciled by {@link #reconcile()}. */
+  void restore(Map<String, ZookeeperClient.NodeContent> nodes) {
+    var rootPrefix = zookeeperClient.rootZNode.path() + "/";
+    nodes.forEach(
+        (fullPath, content) -> {
+          if (fullPath.startsWith(rootPrefix)
+              && entries.putIfAbsent(fullPath, new Entry(content, 0)) == null) {
+            unreconciled.add(fullPath);
+          }
+        });
+  }
+
+  /**
+   * Compare each restored node not reconciled yet with Zookeeper, arming its watch, and read again
+   * the ones which changed.
+   */
+  CompletableFuture<Void> reconcile() {
+    var checks =
+        List.copyOf(unreconciled).stream()
+            .map(this::reconcile)
+            .toArray(CompletableFuture[]::new);
+    return CompletableFuture.allOf(checks);
+  }
+
+  private CompletableFuture<Void> reconcile(String fullPath) {
+    var entry = entries.getOrDefault(fullPath, Entry.UNKNOWN);
+    if (entry.content() == null) {
+      unreconciled.remove(fullPath);
+      return CompletableFuture.completedFuture(null);
+    }
+    var path = zookeeperClient.relativize(fullPath);
+    var knownStat = entry.content().stat();
+    return zookeeperClient
+        .existAsync(path, this)
+        .thenCompose(
+            stat -> {
+              if (stat == null) {
+                return CompletableFuture.completedFuture(
+                    knownStat == null ? null : ZookeeperClient.NodeContent.ABSENT);
+              }
+              if (knownStat != null && knownStat.getMzxid() == stat.getMzxid()) {
+                return CompletableFuture.completedFuture(null);
+              }
+              return zookeeperClient.getNodeContentAsync(path, null);
+            })
+        .handle(
+            (content, error) -> {
+              if (error != null) {
+                LOGGER.warn("Unable to reconcile node {}, will try again later", fullPath, error);
+                return null;
+              }
+              unreconciled.remove(fullPath);
+              if (content != null && publish(fullPath, entry.generation(), content)) {
+                LOGGER.debug("Node {} changed since the snapshot", fullPath);
+                changeListener.accept(fullPath);
+              }
+              return null;
+            });
+  }
+
+  private boolean publish(String fullPath, long generation, ZookeeperClient.NodeContent content) {
+    var published = new boolean[1];
+    entries.compute(
+        fullPath,
+        (item, current) -> {
+          var currentGeneration = current == null ? 0 : current.generation();
+          if (currentGeneration != generation) {
+            return current;
+          }
+          published[0] = true;
+          return new Entry(content, generation);
+        });
+    return published[0];
+  }
+
+  /** Remove the watches of every node stored, and forget them. */
+  void close() {
+    closed = true;
+    zookeeperClient.unwatchAll(
+        entries.keySet().stream().map(zookeeperClient::relativize).toList(), this);
+    entries.clear();
+    unreconciled.clear();
+  }
+
+  @Override
+  public void process(WatchedEvent event) {
+    if (closed) {
+      return;
+    }
+    if (event.getType() == Event.EventType.None) {
+      if (event.getState() == Event.KeeperState.Expired) {
+        LOGGER.debug("Zookeeper session expired, every node must be read again");
+        entries.replaceAll((fullPath, entry) -> entry.changed());
+      }
+      return;
+    }
+    var fullPath = event.getPath();
+    entries.compute(
+        fullPath, (item, current) -> (current == null ? Entry.UNKNOWN : current).changed());
+    changeListener.accept(fullPath);
+  }
+
+  private String fullPath(ZnodePath path) {
+    return path.withParent(zookeeperClient.rootZNode).path();
+  }
+}
@@ -0,0 +1,61 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import static java.util.Objects.requireNonNull;
+
+import com.github.jpthiery.arthena.domain.Configuration;
+import com.github.jpthiery.arthena.domain.ConfigurationEntry;
+import com.github.jpthiery.arthena.metrics.MetricsRecorder;
+import com.github.jpthiery.arthena.metrics.MetricsRecorder.Marshalling;
+import java.util.function.Supplier;
+
+/** {@link DataMarshaller} reporting the time spent by another one to a {@link MetricsRecorder}. */
+class MeasuredDataMarshaller implements DataMarshaller {
+
+  private final DataMarshaller delegate;
+
+  private final MetricsRecorder metricsRecorder;
+
+  private MeasuredDataMarshaller(DataMarshaller delegate, MetricsRecorder metricsRecorder) {
+    this.delegate = delegate;
+    this.metricsRecorder = metricsRecorder;
+  }
+
+  /** Measure the given marshaller, unless nothing is recorded. */
+  static DataMarshaller measure(DataMarshaller delegate, MetricsRecorder metricsRecorder) {
+    requireNonNull(delegate, "delegate must be defined");
+    requireNonNull(metricsRecorder, "metricsRecorder must be defined");
+    return metricsRecorder == MetricsRecorder.NOOP
+        ? delegate
+        : new MeasuredDataMarshaller(delegate, metricsRecorder);
+  }
+
+  @Override
+  public <T> Configuration<T> configurationFromByteArray(byte[] data, Class<T> tClass) {
+    return measure(Marshalling.DECODE, () -> delegate.configurationFromByteArray(data, tClass));
+  }
+
+  @Override
+  public <T> ConfigurationEntry<T> configurationEntryFromByteArray(byte[] data, Class<T> tClass) {
+    return measure(
+        Marshalling.DECODE, () -> delegate.configurationEntryFromByteArray(data, tClass));
+  }
+
+  @Override
+  public <T> byte[] toByteArray(Configuration<T> configuration) {
+    return measure(Marshalling.ENCODE, () -> delegate.toByteArray(configuration));
+  }
+
+  @Override
+  public <T> byte[] toByteArray(ConfigurationEntry<T> configurationEntry) {
+    return measure(Marshalling.ENCODE, () -> delegate.toByteArray(configurationEntry));
+  }
+
+  private <R> R measure(Marshalling marshalling, Supplier<R> conversion) {
+    var start = System.nanoTime();
+    try {
+      return conversion.get();
+    } finally {
+      metricsRecorder.recordMarshalling(marshalling, System.nanoTime() - start);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.zookeeper.data.Stat;
+
+/**
+ * Binary file holding the content of nodes, keyed by full path. The layout is a header made of the
+ * magic number <code>ARTS</code> and a version byte, the number of nodes, then for each node its
+ * path, a presence flag and, for present nodes, their <code>mzxid</code> and content.
+ *
+ * <p>Files are written to a temporary file then moved in place, a reader never sees a partially
+ * written file. They are read through a memory mapping.
+ */
+final class NodeSnapshotFile {
+
+  private static final int MAGIC = 0x41525453;
+
+  private static final byte VERSION = 1;
+
+  private static final byte ABSENT = 0;
+
+  private static final byte PRESENT = 1;
+
+  private NodeSnapshotFile() {}
+
+  static void write(Path file, Map<String, ZookeeperClient.NodeContent> nodes) throws IOException {
+    requireNonNull(file, "file must be defined");
+    requireNonNull(nodes, "nodes must be defined");
+    var size = Integer.BYTES + 1 + Integer.BYTES;
+    var paths = new HashMap<String, byte[]>(nodes.size());
+    for (var node : nodes.entrySet()) {
+      var path = node.getKey().getBytes(StandardCharsets.UTF_8);
+      paths.put(node.getKey(), path);
+      size += Integer.BYTES + path.length + 1;
+      if (node.getValue().stat() != null) {
+        size += Long.BYTES + Integer.BYTES + node.getValue().data().length;
+      }
+    }
+    var buffer = ByteBuffer.allocate(size).putInt(MAGIC).put(VERSION).putInt(nodes.size());
+    for (var node : nodes.entrySet()) {
+      var path = paths.get(node.getKey());
+      buffer.putInt(path.length).put(path);
+      var content = node.getValue();
+      if (content.stat() == null) {
+        buffer.put(ABSENT);
+      } else {
+        buffer.put(PRESENT).putLong(content.stat().getMzxid());
+        buffer.putInt(content.data().length).put(content.data());
+      }
+    }
+    buffer.flip();
+    var directory = file.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    var temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+    try {
+      try (var channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        channel.force(true);
+      }
+      Files.move(
+          temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * @return Nodes held by the file, empty if the file does not exist
+   * @throws IOException if the file is not readable or not a valid snapshot
+   */
+  static Map<String, ZookeeperClient.NodeContent> read(Path file) throws IOException {
+    requireNonNull(file, "file must be defined");
+    if (!Files.exists(file)) {
+      return Map.of();
+    }
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+        throw new IOException("File " + file + " is not a supported snapshot");
+      }
+      var count = buffer.getInt();
+      var nodes = new HashMap<String, ZookeeperClient.NodeContent>();
+      for (var index = 0; index < count; index++) {
+        var path = new byte[buffer.getInt()];
+        buffer.get(path);
+        var content = ZookeeperClient.NodeContent.ABSENT;
+        if (buffer.get() == PRESENT) {
+          var stat = new Stat();
+          stat.setMzxid(buffer.getLong());
+          var data = new byte[buffer.getInt()];
+          buffer.get(data);
+          content = new ZookeeperClient.NodeContent(data, stat);
+        }
+        nodes.put(new String(path, StandardCharsets.UTF_8), content);
+      }
+      return nodes;
+    } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+      throw new IOException("Snapshot file " + file + " is truncated or corrupted", e);
+    }
+  }
+}
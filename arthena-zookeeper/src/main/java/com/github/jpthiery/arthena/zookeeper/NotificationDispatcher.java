@@ -0,0 +1,208 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import static java.util.Objects.requireNonNull;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+
+/**
+ * Run notification tasks on an {@link Executor}, outside of the Zookeeper event thread. Tasks of a
+ * same key run one at a time in submission order, and a task submitted while another one of the
+ * same key is still queued replaces it, so a burst of changes on a node is coalesced. The queue of
+ * a key is only registered while it has tasks, and tasks rejected by the executor run on the
+ * calling thread.
+ */
+class NotificationDispatcher {
+
+  private static final Logger LOGGER = getLogger(NotificationDispatcher.class);
+
+  private static final Duration DEFAULT_AWAIT_TIMEOUT = Duration.ofSeconds(30);
+
+  private static final ThreadLocal<Boolean> DRAINING = ThreadLocal.withInitial(() -> false);
+
+  private final Executor executor;
+
+  private final Duration awaitTimeout;
+
+  private final Map<Object, KeyQueue> queues;
+
+  private final AtomicInteger queueDepth;
+
+  private final LongAdder dispatched;
+
+  private final LongAdder totalLatencyNanos;
+
+  private final LongAccumulator maxLatencyNanos;
+
+  NotificationDispatcher(Executor executor, Duration awaitTimeout) {
+    requireNonNull(executor, "executor must be defined");
+    requireNonNull(awaitTimeout, "awaitTimeout must be defined");
+    this.executor = executor;
+    this.awaitTimeout = awaitTimeout;
+    this.queues = new ConcurrentHashMap<>();
+    this.queueDepth = new AtomicInteger();
+    this.dispatched = new LongAdder();
+    this.totalLatencyNanos = new LongAdder();
+    this.maxLatencyNanos = new LongAccumulator(Math::max, 0);
+  }
+
+  NotificationDispatcher(Executor executor) {
+    this(executor, DEFAULT_AWAIT_TIMEOUT);
+  }
+
+  void dispatch(Object key, Runnable task) {
+    requireNonNull(key, "key must be defined");
+    requireNonNull(task, "task must be defined");
+    var queue = enqueue(key, task);
+    if (queue != null) {
+      execute(key, queue);
+    }
+  }
+
+  /**
+   * Dispatch a task which completes the given future, and wait for the future. Called from a
+   * notification task, the task runs on the calling thread, since the executor may have no other
+   * thread available than the caller.
+   *
+   * @throws CompletionException if the future completed exceptionally, or was not completed within
+   *     the timeout
+   */
+  void dispatchAndWait(Object key, Runnable task, CompletableFuture<?> completion) {
+    requireNonNull(key, "key must be defined");
+    requireNonNull(task, "task must be defined");
+    requireNonNull(completion, "completion must be defined");
+    var queue = enqueue(key, task);
+    if (queue != null) {
+      if (DRAINING.get()) {
+        drain(key, queue);
+      } else {
+        execute(key, queue);
+      }
+    }
+    try {
+      completion.get(awaitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      throw new CompletionException(e.getCause());
+    } catch (TimeoutException e) {
+      completion.completeExceptionally(e);
+      throw new CompletionException(
+          "Task of " + key + " not completed within " + awaitTimeout.toMillis() + " ms", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      completion.completeExceptionally(e);
+      throw new CompletionException(e);
+    }
+  }
+
+  /**
+   * Queue a task in place of the one queued for its key.
+   *
+   * @return The queue of the key if it must be drained, <code>null</code> if already draining
+   */
+  private KeyQueue enqueue(Object key, Runnable task) {
+    while (true) {
+      var queue = queues.computeIfAbsent(key, item -> new KeyQueue());
+      synchronized (queue) {
+        if (queue.removed) {
+          // Drained and removed meanwhile, a new queue is registered for the key.
+          continue;
+        }
+        if (queue.task == null) {
+          queueDepth.incrementAndGet();
+          queue.queuedAt = System.nanoTime();
+        }
+        queue.task = task;
+        if (queue.running) {
+          return null;
+        }
+        queue.running = true;
+        return queue;
+      }
+    }
+  }
+
+  private void execute(Object key, KeyQueue queue) {
+    try {
+      executor.execute(() -> drain(key, queue));
+    } catch (RejectedExecutionException e) {
+      LOGGER.warn("Notification executor rejected change of {}, run on calling thread", key, e);
+      drain(key, queue);
+    }
+  }
+
+  NotificationStatistics statistics() {
+    var count = dispatched.sum();
+    return new NotificationStatistics(
+        queueDepth.get(),
+        count,
+        Duration.ofNanos(count == 0 ? 0 : totalLatencyNanos.sum() / count),
+        Duration.ofNanos(maxLatencyNanos.get()));
+  }
+
+  /** Provide the number of keys having a task queued or running. */
+  int keyCount() {
+    return queues.size();
+  }
+
+  private void drain(Object key, KeyQueue queue) {
+    var draining = DRAINING.get();
+    DRAINING.set(true);
+    try {
+      drainTasks(key, queue);
+    } finally {
+      DRAINING.set(draining);
+    }
+  }
+
+  private void drainTasks(Object key, KeyQueue queue) {
+    while (true) {
+      Runnable task;
+      long queuedAt;
+      synchronized (queue) {
+        task = queue.task;
+        if (task == null) {
+          queue.running = false;
+          queue.removed = true;
+          queues.remove(key, queue);
+          return;
+        }
+        queuedAt = queue.queuedAt;
+        queue.task = null;
+        queueDepth.decrementAndGet();
+      }
+      var latency = System.nanoTime() - queuedAt;
+      dispatched.increment();
+      totalLatencyNanos.add(latency);
+      maxLatencyNanos.accumulate(latency);
+      try {
+        task.run();
+      } catch (Exception e) {
+        LOGGER.error("Unable to run notification task", e);
+      }
+    }
+  }
+
+  private static class KeyQueue {
+
+    private Runnable task;
+
+    private long queuedAt;
+
+    private boolean running;
+
+    private boolean removed;
+  }
+}
@@ -0,0 +1,15 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import java.time.Duration;
+
+/**
+ * Statistics of the notifications dispatched to {@link
+ * com.github.jpthiery.arthena.ValueChangeListener}.
+ *
+ * @param queueDepth Number of subscriptions with a change waiting to be dispatched
+ * @param dispatched Number of changes dispatched so far
+ * @param meanDispatchLatency Mean time a change waited before being dispatched
+ * @param maxDispatchLatency Longest time a change waited before being dispatched
+ */
+public record NotificationStatistics(
+    int queueDepth, long dispatched, Duration meanDispatchLatency, Duration maxDispatchLatency) {}
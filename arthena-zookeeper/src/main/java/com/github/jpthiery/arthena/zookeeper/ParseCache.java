@@ -0,0 +1,72 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Keep, per node, the object last decoded from its content along with the <code>mzxid</code> of the
+ * content, so an unchanged node is not decoded again. A node is only associated to the class it
+ * was last decoded as, and forgotten once read as absent.
+ */
+class ParseCache {
+
+  private record Parsed(long mzxid, Class<?> tClass, Object value) {}
+
+  private final Map<String, Parsed> entries;
+
+  ParseCache() {
+    this.entries = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * @return The object decoded from the node content of the given <code>mzxid</code>, <code>null
+   *     </code> if it is not known
+   */
+  @SuppressWarnings("unchecked")
+  <R> R getIfPresent(ZnodePath path, Class<?> tClass, long mzxid) {
+    var parsed = entries.get(path.path());
+    if (parsed == null || parsed.mzxid() != mzxid || parsed.tClass() != tClass) {
+      return null;
+    }
+    return (R) parsed.value();
+  }
+
+  /**
+   * Decode the content of a node, unless the object decoded from that same content is known.
+   *
+   * @return The decoded object, <code>null</code> if the node is absent or its content is empty
+   */
+  <T, R> R parse(
+      ZnodePath path,
+      ZookeeperClient.NodeContent content,
+      Class<T> tClass,
+      BiFunction<byte[], Class<T>, R> parser) {
+    requireNonNull(path, "path must be defined");
+    requireNonNull(content, "content must be defined");
+    if (content.stat() == null) {
+      entries.remove(path.path());
+      return null;
+    }
+    var mzxid = content.stat().getMzxid();
+    R cached = getIfPresent(path, tClass, mzxid);
+    if (cached != null) {
+      return cached;
+    }
+    var parsed = parser.apply(content.data(), tClass);
+    if (parsed != null) {
+      // A concurrent read may have already decoded a more recent content
+      entries.merge(
+          path.path(),
+          new Parsed(mzxid, tClass, parsed),
+          (current, candidate) -> candidate.mzxid() >= current.mzxid() ? candidate : current);
+    }
+    return parsed;
+  }
+
+  void evict(ZnodePath path) {
+    entries.remove(path.path());
+  }
+}
@@ -0,0 +1,270 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.Objects.requireNonNullElseGet;
+
+import com.github.jpthiery.arthena.ConfigurationHandle;
+import com.github.jpthiery.arthena.ConfigurationValueProvider;
+import com.github.jpthiery.arthena.ValueChangeListener;
+import com.github.jpthiery.arthena.domain.ConfigurationKey;
+import com.github.jpthiery.arthena.domain.Environment;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import org.apache.zookeeper.ZooKeeper;
+
+/**
+ * A {@link ConfigurationValueProvider} spreading reads over a pool of Zookeeper sessions, which may
+ * be connected to different members or observers of the ensemble, so reads are not bound to the
+ * connection and I/O thread of a single session. A {@link ZookeeperConfigurationValueProvider} is
+ * created per session, and every configuration key is served by the one chosen by the hash of the
+ * key, so that the reads, watches and notifications of a key stay ordered on a single session.
+ * Subscriptions to a prefix are served by the session chosen by the hash of the prefix.
+ */
+public class PooledZookeeperConfigurationValueProvider
+    implements ConfigurationValueProvider, AutoCloseable {
+
+  private final List<ZookeeperConfigurationValueProvider> providers;
+
+  private final Executor readExecutor;
+
+  /**
+   * @param zookeepers Zookeeper sessions used to read values
+   * @param dataMarshaller Marshaller of stored data, <code>null</code> to detect the format
+   * @param options Options of the provider of every session, <code>null</code> to use defaults. A
+   *     snapshot file is suffixed by the index of the session it is written for.
+   */
+  public PooledZookeeperConfigurationValueProvider(
+      List<ZooKeeper> zookeepers, DataMarshaller dataMarshaller, ValueProviderOptions options) {
+    this(
+        zookeepers,
+        dataMarshaller,
+        sessionOptions(
+            requireNonNullElseGet(options, ValueProviderOptions::defaults),
+            requireNonNull(zookeepers, "zookeepers must be defined").size()));
+  }
+
+  public PooledZookeeperConfigurationValueProvider(List<ZooKeeper> zookeepers) {
+    this(zookeepers, null, ValueProviderOptions.defaults());
+  }
+
+  /**
+   * @param sessionOptions Options of the provider of each session, in the order of the sessions
+   */
+  PooledZookeeperConfigurationValueProvider(
+      List<ZooKeeper> zookeepers,
+      DataMarshaller dataMarshaller,
+      List<ValueProviderOptions> sessionOptions) {
+    requireNonNull(zookeepers, "zookeepers must be defined");
+    requireNonNull(sessionOptions, "sessionOptions must be defined");
+    if (zookeepers.isEmpty()) {
+      throw new IllegalArgumentException("zookeepers must contain at least one session");
+    }
+    if (sessionOptions.size() != zookeepers.size()) {
+      throw new IllegalArgumentException("sessionOptions must contain options of every session");
+    }
+    var sessionProviders = new ArrayList<ZookeeperConfigurationValueProvider>(zookeepers.size());
+    for (var index = 0; index < zookeepers.size(); index++) {
+      sessionProviders.add(
+          new ZookeeperConfigurationValueProvider(
+              zookeepers.get(index), dataMarshaller, sessionOptions.get(index)));
+    }
+    this.providers = List.copyOf(sessionProviders);
+    this.readExecutor = task -> Thread.ofVirtual().name("arthena-read").start(task);
+  }
+
+  private static List<ValueProviderOptions> sessionOptions(
+      ValueProviderOptions options, int sessionCount) {
+    var snapshotFile = options.snapshotFile();
+    var sessionOptions = new ArrayList<ValueProviderOptions>(sessionCount);
+    for (var index = 0; index < sessionCount; index++) {
+      sessionOptions.add(
+          snapshotFile == null
+              ? options
+              : options.withSnapshotFile(
+                  snapshotFile.resolveSibling(snapshotFile.getFileName() + "." + index)));
+    }
+    return sessionOptions;
+  }
+
+  private int sessionIndex(ConfigurationKey key) {
+    requireNonNull(key, "key must be defined");
+    return Math.floorMod(key.key().hashCode(), providers.size());
+  }
+
+  private ZookeeperConfigurationValueProvider provider(ConfigurationKey key) {
+    return providers.get(sessionIndex(key));
+  }
+
+  @Override
+  public <T> Optional<T> getValue(ConfigurationKey key, Environment environment, Class<T> tClass) {
+    return provider(key).getValue(key, environment, tClass);
+  }
+
+  @Override
+  public <T> Optional<T> getValue(ConfigurationKey key, Class<T> tClass) {
+    return provider(key).getValue(key, tClass);
+  }
+
+  @Override
+  public <T> Optional<T> getValueWithFallback(
+      ConfigurationKey key, List<Environment> environments, Class<T> tClass) {
+    return provider(key).getValueWithFallback(key, environments, tClass);
+  }
+
+  @Override
+  public <T> CompletableFuture<Optional<T>> getValueAsync(
+      ConfigurationKey key, Environment environment, Class<T> tClass) {
+    return provider(key).getValueAsync(key, environment, tClass);
+  }
+
+  @Override
+  public <T> CompletableFuture<Optional<T>> getValueAsync(ConfigurationKey key, Class<T> tClass) {
+    return provider(key).getValueAsync(key, tClass);
+  }
+
+  /** Keys are grouped by session, and the groups are read concurrently. */
+  @Override
+  public <T> Map<ConfigurationKey, Optional<T>> getValues(
+      Collection<ConfigurationKey> keys, Environment environment, Class<T> tClass) {
+    requireNonNull(keys, "keys must be defined");
+    var sessionKeys = new LinkedHashMap<Integer, List<ConfigurationKey>>();
+    keys.forEach(
+        key -> sessionKeys.computeIfAbsent(sessionIndex(key), index -> new ArrayList<>()).add(key));
+    var values = new HashMap<ConfigurationKey, Optional<T>>();
+    onEverySession(
+            sessionKeys.keySet(),
+            index -> providers.get(index).getValues(sessionKeys.get(index), environment, tClass))
+        .forEach(values::putAll);
+    return values;
+  }
+
+  /**
+   * The tree under the prefix is scanned once, by the session serving the prefix, then every
+   * session loads, concurrently, the discovered configurations it serves.
+   */
+  @Override
+  public int prefetch(ConfigurationKey prefix, Set<Environment> environments) {
+    requireNonNull(environments, "environments must be defined");
+    var sessionKeyPaths = new LinkedHashMap<Integer, List<ZnodePath>>();
+    provider(prefix)
+        .scanConfigurations(prefix)
+        .forEach(
+            keyPath ->
+                sessionKeyPaths
+                    .computeIfAbsent(
+                        sessionIndex(keyPath.toConfigurationKey()), index -> new ArrayList<>())
+                    .add(keyPath));
+    return onEverySession(
+            sessionKeyPaths.keySet(),
+            index ->
+                providers.get(index).prefetch(sessionKeyPaths.get(index).iterator(), environments))
+        .stream()
+        .mapToInt(Integer::intValue)
+        .sum();
+  }
+
+  /**
+   * Run an operation on several sessions concurrently, or on the calling thread for a single one.
+   *
+   * @return Results of the operation, in the order of the given sessions
+   */
+  private <R> List<R> onEverySession(Collection<Integer> indexes, Function<Integer, R> operation) {
+    if (indexes.size() == 1) {
+      return List.of(operation.apply(indexes.iterator().next()));
+    }
+    var futures =
+        indexes.stream()
+            .map(index -> CompletableFuture.supplyAsync(() -> operation.apply(index), readExecutor))
+            .toList();
+    try {
+      return futures.stream().map(CompletableFuture::join).toList();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  public <T> ConfigurationHandle<T> handle(
+      ConfigurationKey key, Environment environment, Class<T> tClass) {
+    return provider(key).handle(key, environment, tClass);
+  }
+
+  @Override
+  public <T> ConfigurationHandle<T> handle(ConfigurationKey key, Class<T> tClass) {
+    return provider(key).handle(key, tClass);
+  }
+
+  @Override
+  public <T> void subscribeToValueChange(
+      ConfigurationKey key, ValueChangeListener listener, Class<T> tClass) {
+    provider(key).subscribeToValueChange(key, listener, tClass);
+  }
+
+  @Override
+  public <T> void subscribeToValueChange(
+      ConfigurationKey key,
+      Environment environment,
+      ValueChangeListener listener,
+      Class<T> tClass) {
+    provider(key).subscribeToValueChange(key, environment, listener, tClass);
+  }
+
+  @Override
+  public <T> void subscribeToPrefix(
+      ConfigurationKey prefix, ValueChangeListener listener, Class<T> tClass) {
+    provider(prefix).subscribeToPrefix(prefix, listener, tClass);
+  }
+
+  /** Provide statistics about notifications dispatched to subscribed listeners of every session. */
+  public NotificationStatistics notificationStatistics() {
+    var queueDepth = 0;
+    var dispatched = 0L;
+    var totalDispatchLatency = Duration.ZERO;
+    var maxDispatchLatency = Duration.ZERO;
+    for (var provider : providers) {
+      var statistics = provider.notificationStatistics();
+      queueDepth += statistics.queueDepth();
+      dispatched += statistics.dispatched();
+      totalDispatchLatency =
+          totalDispatchLatency.plus(
+              statistics.meanDispatchLatency().multipliedBy(statistics.dispatched()));
+      if (statistics.maxDispatchLatency().compareTo(maxDispatchLatency) > 0) {
+        maxDispatchLatency = statistics.maxDispatchLatency();
+      }
+    }
+    return new NotificationStatistics(
+        queueDepth,
+        dispatched,
+        dispatched == 0 ? Duration.ZERO : totalDispatchLatency.dividedBy(dispatched),
+        maxDispatchLatency);
+  }
+
+  /**
+   * Write the snapshot file of every session right away.
+   *
+   * @throws IllegalStateException if no snapshot file is defined in options
+   */
+  public void writeSnapshot() {
+    providers.forEach(ZookeeperConfigurationValueProvider::writeSnapshot);
+  }
+
+  /** Close the provider of every session, see {@link ZookeeperConfigurationValueProvider#close}. */
+  @Override
+  public void close() {
+    providers.forEach(ZookeeperConfigurationValueProvider::close);
+  }
+}
@@ -0,0 +1,194 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import static com.github.jpthiery.arthena.zookeeper.ZookeeperConfigurationManager.CONFIG_NODE_NAME;
+import static java.util.Objects.requireNonNull;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+
+/**
+ * Follow the value nodes of every configuration key under a prefix, from the events of the
+ * recursive watch routed by {@link ZnodeEventRouter}. A node is a value node when its parent is a
+ * key, a node holding a CONFIG child. Changes of distinct nodes are dispatched independently,
+ * changes of a same node one at a time.
+ */
+class PrefixSubscription implements ZnodeEventRouter.SubtreeListener {
+
+  private static final Logger LOGGER = getLogger(PrefixSubscription.class);
+
+  private static final int SCAN_MAX_IN_FLIGHT = 64;
+
+  private static final int READ_BATCH_SIZE = 256;
+
+  interface ValueObserver {
+
+    /**
+     * Called when a value node changed.
+     *
+     * @param keyPath Path of the configuration key
+     * @param nodeName Name of the value node
+     * @param previous Previous content, <code>null</code> if the node did not exist
+     * @param current Current content, <code>null</code> if the node has been deleted
+     */
+    void change(ZnodePath keyPath, String nodeName, byte[] previous, byte[] current);
+  }
+
+  private final ZookeeperClient zookeeperClient;
+
+  private final NotificationDispatcher notificationDispatcher;
+
+  private final ZnodePath prefixPath;
+
+  private final ValueObserver valueObserver;
+
+  private final Set<String> keys;
+
+  private final Map<String, byte[]> values;
+
+  private final CompletableFuture<Void> initialized;
+
+  PrefixSubscription(
+      ZookeeperClient zookeeperClient,
+      NotificationDispatcher notificationDispatcher,
+      ZnodePath prefixPath,
+      ValueObserver valueObserver) {
+    requireNonNull(zookeeperClient, "zookeeperClient must be defined");
+    requireNonNull(notificationDispatcher, "notificationDispatcher must be defined");
+    requireNonNull(prefixPath, "prefixPath must be defined");
+    requireNonNull(valueObserver, "valueObserver must be defined");
+    this.zookeeperClient = zookeeperClient;
+    this.notificationDispatcher = notificationDispatcher;
+    this.prefixPath = prefixPath;
+    this.valueObserver = valueObserver;
+    this.keys = ConcurrentHashMap.newKeySet();
+    this.values = new ConcurrentHashMap<>();
+    this.initialized = new CompletableFuture<>();
+  }
+
+  /**
+   * Register on the router then load the current values, changes received meanwhile are only
+   * processed once values are loaded. The subscription is unregistered if values cannot be loaded.
+   */
+  void start(ZnodeEventRouter eventRouter) {
+    eventRouter.registerSubtree(prefixPath, this);
+    try {
+      var nodes = new ArrayList<String>();
+      zookeeperClient
+          .scan(prefixPath, name -> true, false, SCAN_MAX_IN_FLIGHT)
+          .forEach(
+              node -> {
+                if (isConfig(node.path())) {
+                  keys.add(parentOf(node.path()));
+                } else {
+                  nodes.add(node.path());
+                }
+              });
+      // Only the contents of value nodes are read, the children of keys besides their CONFIG node.
+      var valueNodes = nodes.stream().filter(path -> keys.contains(parentOf(path))).toList();
+      for (var from = 0; from < valueNodes.size(); from += READ_BATCH_SIZE) {
+        var batch = valueNodes.subList(from, Math.min(from + READ_BATCH_SIZE, valueNodes.size()));
+        var contents =
+            zookeeperClient.getNodeContents(
+                batch.stream().map(zookeeperClient::relativize).toList());
+        for (var index = 0; index < batch.size(); index++) {
+          if (contents.get(index).stat() != null) {
+            values.put(batch.get(index), contents.get(index).data());
+          }
+        }
+      }
+      initialized.complete(null);
+      LOGGER.debug("Subscribe to {} values under {}", values.size(), prefixPath.path());
+    } catch (RuntimeException e) {
+      initialized.completeExceptionally(e);
+      eventRouter.unregisterSubtree(prefixPath, this);
+      throw new ZookeeperClient.ZooKeeperClientException(
+          "Unable to subscribe to nodes under " + prefixPath.path(), e);
+    }
+  }
+
+  @Override
+  public void nodeChanged(String fullPath) {
+    if (fullPath == null) {
+      notificationDispatcher.dispatch(this, this::resync);
+    } else {
+      notificationDispatcher.dispatch(new NodeKey(this, fullPath), () -> refresh(fullPath));
+    }
+  }
+
+  /** Refresh every node under the prefix, and every node known, after changes may be missed. */
+  private void resync() {
+    if (!awaitInitialized()) {
+      return;
+    }
+    var paths = new HashSet<String>();
+    zookeeperClient
+        .scan(prefixPath, name -> true, false, SCAN_MAX_IN_FLIGHT)
+        .forEach(node -> paths.add(node.path()));
+    keys.forEach(key -> paths.add(key + "/" + CONFIG_NODE_NAME));
+    paths.addAll(values.keySet());
+    paths.forEach(this::nodeChanged);
+  }
+
+  private void refresh(String fullPath) {
+    if (!awaitInitialized()) {
+      return;
+    }
+    var parent = parentOf(fullPath);
+    var content = zookeeperClient.getNodeContent(zookeeperClient.relativize(fullPath));
+    if (isConfig(fullPath)) {
+      if (content.stat() == null) {
+        keys.remove(parent);
+      } else if (keys.add(parent)) {
+        // Value nodes created before the CONFIG node have been ignored so far.
+        zookeeperClient.childrenPaths(zookeeperClient.relativize(parent)).stream()
+            .map(child -> child.withParent(zookeeperClient.rootZNode).path())
+            .filter(child -> !isConfig(child))
+            .forEach(this::nodeChanged);
+      }
+      return;
+    }
+    if (!keys.contains(parent) && !values.containsKey(fullPath)) {
+      return;
+    }
+    var current = content.stat() == null ? null : content.data();
+    var previous = current == null ? values.remove(fullPath) : values.put(fullPath, current);
+    if (!Arrays.equals(previous, current)) {
+      valueObserver.change(
+          zookeeperClient.relativize(parent),
+          fullPath.substring(parent.length() + 1),
+          previous,
+          current);
+    }
+  }
+
+  /**
+   * @return Whether values have been loaded, <code>false</code> when the subscription failed to
+   *     load them, changes received meanwhile being then ignored
+   */
+  private boolean awaitInitialized() {
+    try {
+      initialized.join();
+      return true;
+    } catch (CompletionException e) {
+      return false;
+    }
+  }
+
+  private static boolean isConfig(String fullPath) {
+    return fullPath.endsWith("/" + CONFIG_NODE_NAME);
+  }
+
+  private static String parentOf(String fullPath) {
+    return fullPath.substring(0, fullPath.lastIndexOf('/'));
+  }
+
+  private record NodeKey(PrefixSubscription subscription, String path) {}
+}
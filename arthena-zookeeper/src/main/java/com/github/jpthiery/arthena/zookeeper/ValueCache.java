@@ -0,0 +1,190 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import static java.util.Objects.requireNonNull;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.github.jpthiery.arthena.domain.ConfigurationKey;
+import com.github.jpthiery.arthena.domain.Environment;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.slf4j.Logger;
+
+/**
+ * In-process cache of resolved values. Each entry is populated on first read and dropped as soon as
+ * Zookeeper notifies a change on one of the nodes it was resolved from, so the next read fetch it
+ * again.
+ *
+ * <p>Values of a configuration key are held in an immutable {@link KeySnapshot} behind an atomic
+ * reference, reading a cached value never takes a lock.
+ */
+class ValueCache implements Watcher {
+
+  private static final Logger LOGGER = getLogger(ValueCache.class);
+
+  /**
+   * A value of a configuration key, resolved along a chain of environments for a target class.
+   *
+   * @param environments Environments looked up in order, empty for the default value only
+   * @param tClass Target class of the value
+   */
+  record Slot(List<Environment> environments, Class<?> tClass) {
+
+    Slot(Environment environment, Class<?> tClass) {
+      this(environment == null ? List.of() : List.of(environment), tClass);
+    }
+  }
+
+  record KeySnapshot(long generation, Map<Slot, Optional<?>> values) {
+
+    private static final KeySnapshot EMPTY = new KeySnapshot(0, Map.of());
+
+    KeySnapshot invalidate() {
+      return new KeySnapshot(generation + 1, Map.of());
+    }
+
+    KeySnapshot with(Slot slot, Optional<?> value) {
+      var updated = new HashMap<>(values);
+      updated.put(slot, value);
+      return new KeySnapshot(generation, Map.copyOf(updated));
+    }
+  }
+
+  interface Loader<T> {
+    Optional<T> load(Watcher watcher) throws Exception;
+  }
+
+  interface AsyncLoader<T> {
+    CompletableFuture<Optional<T>> load(Watcher watcher);
+  }
+
+  private final ZnodePath rootZNode;
+
+  private final Map<ConfigurationKey, AtomicReference<KeySnapshot>> snapshots;
+
+  private final Map<String, Set<ConfigurationKey>> dependents;
+
+  ValueCache(ZnodePath rootZNode) {
+    requireNonNull(rootZNode, "rootZNode must be defined");
+    this.rootZNode = rootZNode;
+    this.snapshots = new ConcurrentHashMap<>();
+    this.dependents = new ConcurrentHashMap<>();
+  }
+
+  @SuppressWarnings("unchecked")
+  <T> Optional<T> getIfPresent(ConfigurationKey key, Slot slot) {
+    var snapshot = snapshots.get(key);
+    if (snapshot == null) {
+      return null;
+    }
+    return (Optional<T>) snapshot.get().values().get(slot);
+  }
+
+  /**
+   * Load the value of a slot. The loader must arm the given watcher on every node listed in
+   * watchedPaths before reading them; a change notified while loading prevents the result from
+   * being cached.
+   */
+  <T> Optional<T> load(
+      ConfigurationKey key, Slot slot, List<ZnodePath> watchedPaths, Loader<T> loader)
+      throws Exception {
+    var pendingLoad = startLoad(key, slot, watchedPaths);
+    var value = loader.load(this);
+    pendingLoad.publish(value);
+    return value;
+  }
+
+  /** Same as {@link #load(ConfigurationKey, Slot, List, Loader)} for an asynchronous loader. */
+  <T> CompletableFuture<Optional<T>> loadAsync(
+      ConfigurationKey key, Slot slot, List<ZnodePath> watchedPaths, AsyncLoader<T> loader) {
+    var pendingLoad = startLoad(key, slot, watchedPaths);
+    return loader
+        .load(this)
+        .thenApply(
+            value -> {
+              pendingLoad.publish(value);
+              return value;
+            });
+  }
+
+  /**
+   * Start the load of a slot whose value is read by the caller, which must arm this cache as
+   * watcher on every node listed in watchedPaths before reading them.
+   */
+  PendingLoad startLoad(ConfigurationKey key, Slot slot, List<ZnodePath> watchedPaths) {
+    // The generation is captured before dependents are registered: a change notified once the key
+    // is registered always bumps a generation newer than the one the load publishes with.
+    var snapshot =
+        snapshots.computeIfAbsent(key, item -> new AtomicReference<>(KeySnapshot.EMPTY));
+    var generation = snapshot.get().generation();
+    for (var path : watchedPaths) {
+      dependents.compute(
+          path.withParent(rootZNode).path(),
+          (item, keys) -> {
+            var current = keys == null ? ConcurrentHashMap.<ConfigurationKey>newKeySet() : keys;
+            current.add(key);
+            return current;
+          });
+    }
+    return new PendingLoad(snapshot, generation, slot);
+  }
+
+  record PendingLoad(AtomicReference<KeySnapshot> snapshot, long generation, Slot slot) {
+
+    void publish(Optional<?> value) {
+      snapshot.updateAndGet(
+          current -> current.generation() == generation ? current.with(slot, value) : current);
+    }
+  }
+
+  /** Provide the number of nodes watched for cached values. */
+  int watchedPathCount() {
+    return dependents.size();
+  }
+
+  /** Provide the full paths of the nodes watched for cached values. */
+  Set<String> watchedPaths() {
+    return Set.copyOf(dependents.keySet());
+  }
+
+  void invalidate(ConfigurationKey key) {
+    var snapshot = snapshots.get(key);
+    if (snapshot != null) {
+      snapshot.updateAndGet(KeySnapshot::invalidate);
+    }
+  }
+
+  void invalidateAll() {
+    dependents.clear();
+    snapshots.values().forEach(snapshot -> snapshot.updateAndGet(KeySnapshot::invalidate));
+  }
+
+  @Override
+  public void process(WatchedEvent event) {
+    if (event.getType() == Event.EventType.None) {
+      if (event.getState() == Event.KeeperState.Expired) {
+        LOGGER.debug("Zookeeper session expired, invalidate all cached values");
+        invalidateAll();
+      }
+      return;
+    }
+    LOGGER.debug("Received event {}", event);
+    invalidatePath(event.getPath());
+  }
+
+  /** Invalidate values resolved from the node of the given full path. */
+  void invalidatePath(String fullPath) {
+    var keys = dependents.remove(fullPath);
+    if (keys != null) {
+      LOGGER.debug("Node {} changed, invalidate cached values of {} keys", fullPath, keys.size());
+      keys.forEach(this::invalidate);
+    }
+  }
+}
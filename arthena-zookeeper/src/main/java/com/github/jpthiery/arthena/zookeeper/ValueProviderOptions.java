@@ -0,0 +1,246 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import static java.util.Objects.requireNonNull;
+
+import com.github.jpthiery.arthena.metrics.MetricsRecorder;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+/**
+ * Options which tune how a {@link ZookeeperConfigurationValueProvider} reads values, obtained from
+ * {@link #defaults()} or {@link #builder()}. Options are only created through the builder, so new
+ * ones can be added without breaking existing callers.
+ */
+public final class ValueProviderOptions {
+
+  public enum ReadMode {
+    /** Reads of a same configuration key are serialized by a per-key lock. */
+    LOCKED,
+    /** Reads never take a lock, each one sees a consistent snapshot of the nodes it reads. */
+    LOCK_FREE
+  }
+
+  public static final Duration DEFAULT_SNAPSHOT_INTERVAL = Duration.ofMinutes(1);
+
+  private final boolean cacheValues;
+
+  private final ReadMode readMode;
+
+  private final Executor notificationExecutor;
+
+  private final boolean storeNodesLocally;
+
+  private final Path snapshotFile;
+
+  private final Duration snapshotInterval;
+
+  private final MetricsRecorder metricsRecorder;
+
+  private final boolean directRequests;
+
+  private ValueProviderOptions(Builder builder) {
+    requireNonNull(builder.readMode, "readMode must be defined");
+    requireNonNull(builder.snapshotInterval, "snapshotInterval must be defined");
+    if (builder.snapshotInterval.isNegative() || builder.snapshotInterval.isZero()) {
+      throw new IllegalArgumentException("snapshotInterval must be positive");
+    }
+    this.cacheValues = builder.cacheValues;
+    this.readMode = builder.readMode;
+    this.notificationExecutor = builder.notificationExecutor;
+    this.storeNodesLocally = builder.storeNodesLocally;
+    this.snapshotFile = builder.snapshotFile;
+    this.snapshotInterval = builder.snapshotInterval;
+    this.metricsRecorder = builder.metricsRecorder;
+    this.directRequests = builder.directRequests;
+  }
+
+  public static ValueProviderOptions defaults() {
+    return builder().build();
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** Provide a builder initialized with these options. */
+  public Builder toBuilder() {
+    var builder = new Builder();
+    builder.cacheValues = cacheValues;
+    builder.readMode = readMode;
+    builder.notificationExecutor = notificationExecutor;
+    builder.storeNodesLocally = storeNodesLocally;
+    builder.snapshotFile = snapshotFile;
+    builder.snapshotInterval = snapshotInterval;
+    builder.metricsRecorder = metricsRecorder;
+    builder.directRequests = directRequests;
+    return builder;
+  }
+
+  /**
+   * @return Whether resolved values are kept in memory, populated on first read and invalidated by
+   *     Zookeeper watches.
+   */
+  public boolean cacheValues() {
+    return cacheValues;
+  }
+
+  /**
+   * @return How concurrent reads of a same configuration key are coordinated.
+   */
+  public ReadMode readMode() {
+    return readMode;
+  }
+
+  /**
+   * @return Executor running {@link com.github.jpthiery.arthena.ValueChangeListener} callbacks,
+   *     <code>null</code> to start a virtual thread per dispatch.
+   */
+  public Executor notificationExecutor() {
+    return notificationExecutor;
+  }
+
+  /**
+   * @return Whether a local copy of every node read is kept, kept current by Zookeeper watches,
+   *     which {@link ZookeeperConfigurationValueProvider#prefetch} can populate ahead of reads.
+   *     Nodes are never evicted from the copy.
+   */
+  public boolean storeNodesLocally() {
+    return storeNodesLocally;
+  }
+
+  /**
+   * @return File where nodes stored locally are persisted, and restored from on startup so values
+   *     are available before Zookeeper answers, <code>null</code> to not use any snapshot. Nodes
+   *     are stored locally whenever a snapshot file is defined, and the file is written a last
+   *     time when the provider is closed.
+   */
+  public Path snapshotFile() {
+    return snapshotFile;
+  }
+
+  /**
+   * @return Delay between two writes of the snapshot file.
+   */
+  public Duration snapshotInterval() {
+    return snapshotInterval;
+  }
+
+  /**
+   * @return Recorder of Zookeeper operations, lock waits, marshalling and active watchers, <code>
+   *     null</code> to not record anything.
+   */
+  public MetricsRecorder metricsRecorder() {
+    return metricsRecorder;
+  }
+
+  /**
+   * @return Whether nodes are read with getData requests sent directly, an absent node being
+   *     reported by a NoNode error, rather than checking the existence of the key and of each node
+   *     first. A read then costs two round trips instead of five.
+   */
+  public boolean directRequests() {
+    return directRequests;
+  }
+
+  public ValueProviderOptions withCacheValues(boolean cacheValues) {
+    return toBuilder().cacheValues(cacheValues).build();
+  }
+
+  public ValueProviderOptions withReadMode(ReadMode readMode) {
+    return toBuilder().readMode(readMode).build();
+  }
+
+  public ValueProviderOptions withNotificationExecutor(Executor notificationExecutor) {
+    return toBuilder().notificationExecutor(notificationExecutor).build();
+  }
+
+  public ValueProviderOptions withStoreNodesLocally(boolean storeNodesLocally) {
+    return toBuilder().storeNodesLocally(storeNodesLocally).build();
+  }
+
+  public ValueProviderOptions withSnapshotFile(Path snapshotFile) {
+    return toBuilder().snapshotFile(snapshotFile).build();
+  }
+
+  public ValueProviderOptions withSnapshotInterval(Duration snapshotInterval) {
+    return toBuilder().snapshotInterval(snapshotInterval).build();
+  }
+
+  public ValueProviderOptions withMetricsRecorder(MetricsRecorder metricsRecorder) {
+    return toBuilder().metricsRecorder(metricsRecorder).build();
+  }
+
+  public ValueProviderOptions withDirectRequests(boolean directRequests) {
+    return toBuilder().directRequests(directRequests).build();
+  }
+
+  /** Builder of {@link ValueProviderOptions}, starting from the defaults. */
+  public static final class Builder {
+
+    private boolean cacheValues;
+
+    private ReadMode readMode = ReadMode.LOCKED;
+
+    private Executor notificationExecutor;
+
+    private boolean storeNodesLocally;
+
+    private Path snapshotFile;
+
+    private Duration snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+
+    private MetricsRecorder metricsRecorder;
+
+    private boolean directRequests;
+
+    private Builder() {}
+
+    public Builder cacheValues(boolean cacheValues) {
+      this.cacheValues = cacheValues;
+      return this;
+    }
+
+    public Builder readMode(ReadMode readMode) {
+      this.readMode = readMode;
+      return this;
+    }
+
+    public Builder notificationExecutor(Executor notificationExecutor) {
+      this.notificationExecutor = notificationExecutor;
+      return this;
+    }
+
+    public Builder storeNodesLocally(boolean storeNodesLocally) {
+      this.storeNodesLocally = storeNodesLocally;
+      return this;
+    }
+
+    public Builder snapshotFile(Path snapshotFile) {
+      this.snapshotFile = snapshotFile;
+      return this;
+    }
+
+    public Builder snapshotInterval(Duration snapshotInterval) {
+      this.snapshotInterval = snapshotInterval;
+      return this;
+    }
+
+    public Builder metricsRecorder(MetricsRecorder metricsRecorder) {
+      this.metricsRecorder = metricsRecorder;
+      return this;
+    }
+
+    public Builder directRequests(boolean directRequests) {
+      this.directRequests = directRequests;
+      return this;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the snapshot interval is not positive
+     */
+    public ValueProviderOptions build() {
+      return new ValueProviderOptions(this);
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import static java.util.Objects.requireNonNull;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.slf4j.Logger;
+
+/**
+ * Route events of a single persistent recursive watch, armed on the root node, to the listeners
+ * registered in-process for a given node or for a whole subtree. The watch stays armed after each
+ * event, so no update is lost between an event and a re-registration.
+ */
+class ZnodeEventRouter implements Watcher {
+
+  private static final Logger LOGGER = getLogger(ZnodeEventRouter.class);
+
+  interface NodeListener {
+
+    /**
+     * Called when the node has been created, updated or deleted, or when changes may have been
+     * missed while the client was disconnected.
+     */
+    void nodeChanged();
+  }
+
+  interface SubtreeListener {
+
+    /**
+     * Called when a node under the subtree has been created, updated or deleted.
+     *
+     * @param fullPath Full path of the changed node, <code>null</code> when changes may have been
+     *     missed while the client was disconnected
+     */
+    void nodeChanged(String fullPath);
+  }
+
+  private final ZookeeperClient zookeeperClient;
+
+  private final Map<String, List<NodeListener>> listeners;
+
+  private final Map<String, List<SubtreeListener>> subtreeListeners;
+
+  private volatile boolean watching;
+
+  private volatile boolean disconnected;
+
+  ZnodeEventRouter(ZookeeperClient zookeeperClient) {
+    requireNonNull(zookeeperClient, "zookeeperClient must be defined");
+    this.zookeeperClient = zookeeperClient;
+    this.listeners = new ConcurrentHashMap<>();
+    this.subtreeListeners = new ConcurrentHashMap<>();
+  }
+
+  void register(ZnodePath path, NodeListener listener) {
+    requireNonNull(path, "path must be defined");
+    requireNonNull(listener, "listener must be defined");
+    listeners.compute(
+        path.withParent(zookeeperClient.rootZNode).path(),
+        (item, nodeListeners) -> {
+          var current =
+              nodeListeners == null ? new CopyOnWriteArrayList<NodeListener>() : nodeListeners;
+          current.add(listener);
+          return current;
+        });
+    watchRootIfNeeded();
+  }
+
+  void unregister(ZnodePath path, NodeListener listener) {
+    requireNonNull(path, "path must be defined");
+    requireNonNull(listener, "listener must be defined");
+    listeners.computeIfPresent(
+        path.withParent(zookeeperClient.rootZNode).path(),
+        (item, nodeListeners) -> {
+          nodeListeners.remove(listener);
+          return nodeListeners.isEmpty() ? null : nodeListeners;
+        });
+  }
+
+  void registerSubtree(ZnodePath path, SubtreeListener listener) {
+    requireNonNull(path, "path must be defined");
+    requireNonNull(listener, "listener must be defined");
+    subtreeListeners.compute(
+        path.withParent(zookeeperClient.rootZNode).path() + "/",
+        (item, prefixListeners) -> {
+          var current =
+              prefixListeners == null
+                  ? new CopyOnWriteArrayList<SubtreeListener>()
+                  : prefixListeners;
+          current.add(listener);
+          return current;
+        });
+    watchRootIfNeeded();
+  }
+
+  void unregisterSubtree(ZnodePath path, SubtreeListener listener) {
+    requireNonNull(path, "path must be defined");
+    requireNonNull(listener, "listener must be defined");
+    subtreeListeners.computeIfPresent(
+        path.withParent(zookeeperClient.rootZNode).path() + "/",
+        (item, prefixListeners) -> {
+          prefixListeners.remove(listener);
+          return prefixListeners.isEmpty() ? null : prefixListeners;
+        });
+  }
+
+  /** Provide the number of in-process listeners, along with the recursive watch serving them. */
+  int listenerCount() {
+    var count = 0;
+    for (var nodeListeners : listeners.values()) {
+      count += nodeListeners.size();
+    }
+    for (var nodeListeners : subtreeListeners.values()) {
+      count += nodeListeners.size();
+    }
+    return watching ? count + 1 : count;
+  }
+
+  /** Unregister every listener, and remove the recursive watch which served them. */
+  void close() {
+    listeners.clear();
+    subtreeListeners.clear();
+    synchronized (this) {
+      if (watching) {
+        zookeeperClient.unwatchRecursively(zookeeperClient.rootZNode, this);
+        watching = false;
+      }
+    }
+  }
+
+  private void watchRootIfNeeded() {
+    if (!watching) {
+      synchronized (this) {
+        if (!watching) {
+          zookeeperClient.watchRecursively(zookeeperClient.rootZNode, this);
+          LOGGER.debug("Watching recursively node {}", zookeeperClient.rootZNode.path());
+          watching = true;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void process(WatchedEvent event) {
+    if (event.getType() == Event.EventType.None) {
+      if (event.getState() == Event.KeeperState.Disconnected) {
+        disconnected = true;
+      } else if (event.getState() == Event.KeeperState.SyncConnected && disconnected) {
+        disconnected = false;
+        LOGGER.debug("Reconnected, check every watched node for missed changes");
+        listeners.values().forEach(nodeListeners -> nodeListeners.forEach(this::notify));
+        subtreeListeners
+            .values()
+            .forEach(nodeListeners -> nodeListeners.forEach(item -> notify(item, null)));
+      }
+      return;
+    }
+    var nodeListeners = listeners.get(event.getPath());
+    if (nodeListeners != null) {
+      LOGGER.debug("Received event {} for {} listeners", event, nodeListeners.size());
+      nodeListeners.forEach(this::notify);
+    }
+    subtreeListeners.forEach(
+        (prefix, prefixListeners) -> {
+          if (event.getPath().startsWith(prefix)) {
+            prefixListeners.forEach(listener -> notify(listener, event.getPath()));
+          }
+        });
+  }
+
+  private void notify(NodeListener listener) {
+    try {
+      listener.nodeChanged();
+    } catch (Exception e) {
+      LOGGER.error("Unable to dispatch a node change to listener {}", listener, e);
+    }
+  }
+
+  private void notify(SubtreeListener listener, String fullPath) {
+    try {
+      listener.nodeChanged(fullPath);
+    } catch (Exception e) {
+      LOGGER.error("Unable to dispatch a change of {} to listener {}", fullPath, listener, e);
+    }
+  }
+}
@@ -5,6 +5,7 @@ import static java.util.Objects.requireNonNull;
 import com.github.jpthiery.arthena.domain.ConfigurationKey;
 import com.github.jpthiery.arthena.domain.Environment;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Pattern;
@@ -34,10 +35,32 @@ public record ZnodePath(String path) {
     }
   }
 
+  /** Provide the configuration key stored at this path, relative to the root node. */
+  public ConfigurationKey toConfigurationKey() {
+    return new ConfigurationKey(path.substring(1).replace('/', ConfigurationKey.SEPARATOR));
+  }
+
   public List<String> pathSplit() {
     return Arrays.stream(path.split("/")).filter(item -> !item.isBlank()).toList();
   }
 
+  /** Provide every ancestor of this path, from the top level one to the direct parent. */
+  public List<ZnodePath> ancestors() {
+    var ancestors = new ArrayList<ZnodePath>();
+    var separator = path.indexOf('/', 1);
+    while (separator > 0) {
+      ancestors.add(new ZnodePath(path.substring(0, separator)));
+      separator = path.indexOf('/', separator + 1);
+    }
+    return ancestors;
+  }
+
+  /** Provide the direct parent of this path, <code>null</code> for a top level path. */
+  public ZnodePath parent() {
+    var separator = path.lastIndexOf('/');
+    return separator == 0 ? null : new ZnodePath(path.substring(0, separator));
+  }
+
   public ZnodePath withParent(ZnodePath parent) {
     if (this.path.startsWith(parent.path())) {
       return this;
@@ -0,0 +1,233 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import static java.util.Objects.requireNonNull;
+
+import com.github.jpthiery.arthena.metrics.MetricsRecorder;
+import com.github.jpthiery.arthena.metrics.MetricsRecorder.Operation;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.data.Stat;
+
+/**
+ * Walk lazily the tree under a node with asynchronous requests, keeping at most a given number of
+ * them in flight. Children of every node are listed, and selected nodes are provided as they
+ * come, along with their content if asked. Requests are only issued while the consumer pulls
+ * nodes, so the memory used does not grow with the size of the tree, only with its width. Nodes
+ * deleted during the walk are skipped.
+ *
+ * <p>An instance is meant to be consumed by a single thread, Zookeeper callbacks only hand their
+ * result over to that thread.
+ */
+class ZnodeTreeScanner implements Iterator<ZnodeTreeScanner.ScannedNode> {
+
+  /**
+   * A selected node and its content.
+   *
+   * @param path Full path of the node
+   * @param content Content of the node, <code>null</code> when contents are not read
+   */
+  record ScannedNode(String path, ZookeeperClient.NodeContent content) {}
+
+  private static final int MAX_BATCH_SIZE = 64;
+
+  private final ZooKeeper zooKeeper;
+
+  private final MetricsRecorder metricsRecorder;
+
+  private final Predicate<String> selected;
+
+  private final boolean readContent;
+
+  private final int maxInFlight;
+
+  private final Deque<String> nodesToList;
+
+  private final Deque<String> nodesToRead;
+
+  private final Deque<ScannedNode> scanned;
+
+  private final BlockingQueue<Runnable> completions;
+
+  private int inFlight;
+
+  /**
+   * @param zooKeeper Zookeeper session used for requests
+   * @param metricsRecorder Recorder of the requests sent
+   * @param rootPath Full path of the node to scan, which is neither selected nor provided
+   * @param selected Whether a node, given its name, must be provided
+   * @param readContent Whether the content of selected nodes must be read
+   * @param maxInFlight Maximum number of requests sent and not answered yet
+   */
+  ZnodeTreeScanner(
+      ZooKeeper zooKeeper,
+      MetricsRecorder metricsRecorder,
+      String rootPath,
+      Predicate<String> selected,
+      boolean readContent,
+      int maxInFlight) {
+    requireNonNull(zooKeeper, "zooKeeper must be defined");
+    requireNonNull(metricsRecorder, "metricsRecorder must be defined");
+    requireNonNull(rootPath, "rootPath must be defined");
+    requireNonNull(selected, "selected must be defined");
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be at least 1");
+    }
+    this.zooKeeper = zooKeeper;
+    this.metricsRecorder = metricsRecorder;
+    this.selected = selected;
+    this.readContent = readContent;
+    this.maxInFlight = maxInFlight;
+    // Depth first, so the nodes waiting to be listed are bounded by depth times width
+    this.nodesToList = new ArrayDeque<>(List.of(rootPath));
+    this.nodesToRead = new ArrayDeque<>();
+    this.scanned = new ArrayDeque<>();
+    this.completions = new LinkedBlockingQueue<>();
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (scanned.isEmpty()) {
+      if (inFlight == 0 && nodesToList.isEmpty() && nodesToRead.isEmpty()) {
+        return false;
+      }
+      sendRequests();
+      try {
+        completions.take().run();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ZookeeperClient.ZooKeeperClientException("Interrupted while scanning nodes", e);
+      }
+      inFlight--;
+    }
+    return true;
+  }
+
+  @Override
+  public ScannedNode next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return scanned.poll();
+  }
+
+  /**
+   * Reads are sent first, they provide nodes to the consumer while listings only add work. Nodes
+   * are read or listed by multi reads of at most {@value #MAX_BATCH_SIZE} nodes, so listing the
+   * many leaves of a tree, the values of a key for instance, does not take a request per leaf.
+   */
+  private void sendRequests() {
+    while (inFlight < maxInFlight) {
+      if (!nodesToRead.isEmpty()) {
+        read(poll(nodesToRead));
+      } else if (!nodesToList.isEmpty()) {
+        list(poll(nodesToList));
+      } else {
+        return;
+      }
+      inFlight++;
+    }
+  }
+
+  private static List<String> poll(Deque<String> nodes) {
+    var batch = new ArrayList<String>(Math.min(nodes.size(), MAX_BATCH_SIZE));
+    while (!nodes.isEmpty() && batch.size() < MAX_BATCH_SIZE) {
+      batch.add(nodes.pop());
+    }
+    return batch;
+  }
+
+  private void list(List<String> paths) {
+    multi(
+        paths.stream().map(Op::getChildren).toList(),
+        (path, result) -> {
+          for (var child : ((OpResult.GetChildrenResult) result).getChildren()) {
+            var childPath = path + "/" + child;
+            if (!selected.test(child)) {
+              nodesToList.push(childPath);
+            } else if (readContent) {
+              nodesToRead.push(childPath);
+            } else {
+              scanned.add(new ScannedNode(childPath, null));
+              nodesToList.push(childPath);
+            }
+          }
+        },
+        paths);
+  }
+
+  /** A selected node may have children too, they are listed only when its Stat says so. */
+  private void read(List<String> paths) {
+    multi(
+        paths.stream().map(Op::getData).toList(),
+        (path, result) -> {
+          var dataResult = (OpResult.GetDataResult) result;
+          scanned.add(new ScannedNode(path, content(dataResult.getData(), dataResult.getStat())));
+          if (dataResult.getStat().getNumChildren() > 0) {
+            nodesToList.push(path);
+          }
+        },
+        paths);
+  }
+
+  /** Send a multi read, then hand over the result of every node found to the consumer thread. */
+  private void multi(
+      List<Op> operations, BiConsumer<String, OpResult> onResult, List<String> paths) {
+    var start = System.nanoTime();
+    zooKeeper.multi(
+        operations,
+        (rc, nodePath, ctx, results) -> {
+          record(Operation.MULTI, start, rc);
+          completions.add(
+              () -> {
+                if (results == null) {
+                  succeeded(rc, paths.getFirst());
+                  return;
+                }
+                for (var index = 0; index < results.size(); index++) {
+                  var result = results.get(index);
+                  var path = paths.get(index);
+                  if (result instanceof OpResult.ErrorResult error) {
+                    // Deleted during the walk, or failing the whole scan.
+                    succeeded(error.getErr(), path);
+                  } else {
+                    onResult.accept(path, result);
+                  }
+                }
+              });
+        },
+        null);
+  }
+
+  private void record(Operation operation, long start, int rc) {
+    metricsRecorder.recordOperation(
+        operation, System.nanoTime() - start, rc == KeeperException.Code.OK.intValue());
+  }
+
+  private static ZookeeperClient.NodeContent content(byte[] data, Stat stat) {
+    return new ZookeeperClient.NodeContent(data == null ? new byte[0] : data, stat);
+  }
+
+  private static boolean succeeded(int rc, String path) {
+    var code = KeeperException.Code.get(rc);
+    if (code == KeeperException.Code.OK) {
+      return true;
+    }
+    if (code == KeeperException.Code.NONODE) {
+      return false;
+    }
+    throw new ZookeeperClient.ZooKeeperClientException(
+        "Unable to scan node " + path, KeeperException.create(code, path));
+  }
+}
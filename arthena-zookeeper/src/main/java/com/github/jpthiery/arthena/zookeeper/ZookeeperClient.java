@@ -3,7 +3,25 @@ package com.github.jpthiery.arthena.zookeeper;
 import static java.util.Objects.requireNonNull;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import com.github.jpthiery.arthena.metrics.MetricsRecorder;
+import com.github.jpthiery.arthena.metrics.MetricsRecorder.Operation;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.SequencedMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.apache.zookeeper.*;
 import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
@@ -12,55 +30,185 @@ class ZookeeperClient {
 
   private static final Logger LOGGER = getLogger(ZookeeperClient.class);
 
+  private static final int MAX_CREATE_ATTEMPTS = 3;
+
+  private static final int MAX_DELETE_ATTEMPTS = 3;
+
+  private static final int DELETE_MAX_IN_FLIGHT = 64;
+
+  /** Half of the default jute.maxbuffer, leaving room for the encoding of the transaction. */
+  private static final int MAX_MULTI_REQUEST_BYTES = 512 * 1024;
+
+  /** Upper bound of the bytes an operation takes in a multi request, besides its path and data. */
+  private static final int OPERATION_OVERHEAD_BYTES = 64;
+
   protected final ZooKeeper zooKeeper;
 
   protected final ZnodePath rootZNode;
 
-  ZookeeperClient(ZooKeeper zooKeeper, ZnodePath rootZNode) {
+  protected final MetricsRecorder metricsRecorder;
+
+  /**
+   * Whether getData and setData requests are sent directly, an absent node being reported by a
+   * NoNode error, rather than after an exists request.
+   */
+  protected final boolean directRequests;
+
+  /**
+   * Full paths of parent nodes known to exist, sorted so that the children of a deleted node are
+   * forgotten at once. Only parents are recorded, so this is bounded by the number of inner nodes
+   * of the tree.
+   */
+  private final NavigableSet<String> knownPaths;
+
+  ZookeeperClient(
+      ZooKeeper zooKeeper,
+      ZnodePath rootZNode,
+      MetricsRecorder metricsRecorder,
+      boolean directRequests) {
     requireNonNull(zooKeeper, "zooKeeper must be defined");
     this.zooKeeper = zooKeeper;
     this.rootZNode = rootZNode == null ? new ZnodePath("/arthena") : rootZNode;
+    this.metricsRecorder = metricsRecorder == null ? MetricsRecorder.NOOP : metricsRecorder;
+    this.directRequests = directRequests;
+    this.knownPaths = new ConcurrentSkipListSet<>();
+  }
+
+  ZookeeperClient(ZooKeeper zooKeeper, ZnodePath rootZNode, MetricsRecorder metricsRecorder) {
+    this(zooKeeper, rootZNode, metricsRecorder, false);
+  }
+
+  ZookeeperClient(ZooKeeper zooKeeper, ZnodePath rootZNode) {
+    this(zooKeeper, rootZNode, null);
   }
 
   ZookeeperClient(ZooKeeper zooKeeper) {
     this(zooKeeper, null);
   }
 
+  private interface Call<T> {
+    T run() throws KeeperException, InterruptedException;
+  }
+
+  /** Run a synchronous request, reporting its duration and outcome to the metrics recorder. */
+  private <T> T measure(Operation operation, Call<T> call)
+      throws KeeperException, InterruptedException {
+    var start = System.nanoTime();
+    var succeeded = false;
+    try {
+      var result = call.run();
+      succeeded = true;
+      return result;
+    } finally {
+      metricsRecorder.recordOperation(operation, System.nanoTime() - start, succeeded);
+    }
+  }
+
   public ZnodePath createZNode(ZnodePath path, byte[] data)
       throws InterruptedException, KeeperException {
     requireNonNull(path, "path must be defined");
     requireNonNull(data, "data must be defined");
-    var accumulator = new StringBuilder();
-    accumulator.append("/");
     var fullNode = path.withParent(rootZNode);
-    var it = fullNode.pathSplit().iterator();
-    while (it.hasNext()) {
-      var item = it.next();
-      accumulator.append(item);
-      var stat = zooKeeper.exists(accumulator.toString(), false);
-      if (stat == null) {
-        if (it.hasNext()) {
-          LOGGER.debug("Create zNode directory {}", accumulator);
-          zooKeeper.create(
-              accumulator.toString(),
-              new byte[0],
-              ZooDefs.Ids.OPEN_ACL_UNSAFE,
-              CreateMode.PERSISTENT);
-        } else {
-          LOGGER.debug("Create zNode with value {}", accumulator);
-          return new ZnodePath(
-              zooKeeper.create(
-                  accumulator.toString(),
-                  data,
-                  ZooDefs.Ids.OPEN_ACL_UNSAFE,
-                  CreateMode.PERSISTENT));
+    try {
+      createZNodes(new LinkedHashMap<>(Map.of(fullNode, data)));
+    } catch (KeeperException.NodeExistsException e) {
+      LOGGER.debug("zNode {} already exist", fullNode.path());
+    }
+    return fullNode;
+  }
+
+  /**
+   * Create several nodes, along with their missing parents, in a single multi transaction. Parents
+   * already known to exist are not checked again, the others are checked with pipelined requests.
+   *
+   * @throws KeeperException.NodeExistsException if one of the given nodes already exist, in which
+   *     case none of them is created.
+   */
+  public void createZNodes(SequencedMap<ZnodePath, byte[]> nodes)
+      throws InterruptedException, KeeperException {
+    requireNonNull(nodes, "nodes must be defined");
+    var fullNodes = new LinkedHashMap<String, byte[]>();
+    nodes.forEach((path, data) -> fullNodes.put(path.withParent(rootZNode).path(), data));
+    var attempt = 0;
+    while (true) {
+      var missingParents = missingParents(fullNodes.sequencedKeySet());
+      var operations = new ArrayList<Op>(missingParents.size() + fullNodes.size());
+      missingParents.forEach(
+          parent ->
+              operations.add(
+                  Op.create(
+                      parent, new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT)));
+      fullNodes.forEach(
+          (path, data) ->
+              operations.add(
+                  Op.create(path, data, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT)));
+      try {
+        LOGGER.debug(
+            "Create zNodes {} with missing parents {}", fullNodes.keySet(), missingParents);
+        measure(Operation.MULTI, () -> zooKeeper.multi(operations));
+        knownPaths.addAll(missingParents);
+        return;
+      } catch (KeeperException.NodeExistsException | KeeperException.NoNodeException e) {
+        var failedPath = failedOperationPath(e, operations);
+        if (fullNodes.containsKey(failedPath)
+            && e.code() == KeeperException.Code.NODEEXISTS) {
+          throw KeeperException.create(KeeperException.Code.NODEEXISTS, failedPath);
+        }
+        // Our knowledge of existing parents is outdated: a concurrent client created one of the
+        // missing parents, or deleted a parent known to exist.
+        if (e.code() == KeeperException.Code.NONODE && failedPath != null) {
+          new ZnodePath(failedPath).ancestors().forEach(this::forgetPath);
+        }
+        if (++attempt >= MAX_CREATE_ATTEMPTS) {
+          throw e;
         }
       }
-      if (it.hasNext()) {
-        accumulator.append("/");
+    }
+  }
+
+  private List<String> missingParents(Collection<String> fullPaths) {
+    var existences = new LinkedHashMap<String, CompletableFuture<Stat>>();
+    for (var fullPath : fullPaths) {
+      for (var ancestor : new ZnodePath(fullPath).ancestors()) {
+        if (!knownPaths.contains(ancestor.path()) && !fullPaths.contains(ancestor.path())) {
+          existences.computeIfAbsent(ancestor.path(), parent -> existAsync(ancestor, null));
+        }
       }
     }
-    return new ZnodePath(accumulator.toString());
+    var missingParents = new ArrayList<String>();
+    existences.forEach(
+        (parent, existence) -> {
+          if (existence.join() == null) {
+            missingParents.add(parent);
+          } else {
+            knownPaths.add(parent);
+          }
+        });
+    return missingParents;
+  }
+
+  private static String failedOperationPath(KeeperException e, List<Op> operations) {
+    var results = e.getResults();
+    if (results != null) {
+      for (int index = 0; index < results.size(); index++) {
+        if (results.get(index) instanceof OpResult.ErrorResult error
+            && error.getErr() != KeeperException.Code.OK.intValue()
+            && error.getErr() != KeeperException.Code.RUNTIMEINCONSISTENCY.intValue()) {
+          return operations.get(index).getPath();
+        }
+      }
+    }
+    return e.getPath();
+  }
+
+  private void forgetPath(ZnodePath fullPath) {
+    knownPaths.remove(fullPath.path());
+  }
+
+  private void forgetPathAndChildren(String fullPath) {
+    knownPaths.remove(fullPath);
+    // Children sort between "path/" and "path0", '0' being the character following '/'.
+    knownPaths.subSet(fullPath + "/", fullPath + "0").clear();
   }
 
   public ZnodePath createZNode(ZnodePath path) {
@@ -75,16 +223,25 @@ class ZookeeperClient {
   public void deleteZNode(ZnodePath path) throws InterruptedException, KeeperException {
     requireNonNull(path, "path must be defined");
     String pathToDelete = path.withParent(rootZNode).path();
-    var exist = zooKeeper.exists(pathToDelete, false);
+    var exist = measure(Operation.EXISTS, () -> zooKeeper.exists(pathToDelete, false));
     if (exist != null) {
-      zooKeeper.delete(pathToDelete, exist.getVersion());
+      measure(
+          Operation.DELETE,
+          () -> {
+            zooKeeper.delete(pathToDelete, exist.getVersion());
+            return null;
+          });
     }
+    forgetPathAndChildren(pathToDelete);
   }
 
   public List<ZnodePath> childrenPaths(ZnodePath path) {
     requireNonNull(path, "path must be defined");
     try {
-      var childrenPath = zooKeeper.getChildren(path.withParent(rootZNode).path(), false);
+      var childrenPath =
+          measure(
+              Operation.GET_CHILDREN,
+              () -> zooKeeper.getChildren(path.withParent(rootZNode).path(), false));
       return childrenPath.stream()
           .map(item -> "/" + item)
           .map(ZnodePath::new)
@@ -96,58 +253,509 @@ class ZookeeperClient {
   }
 
   public Stat exist(ZnodePath path) {
+    return exist(path, null);
+  }
+
+  public Stat exist(ZnodePath path, Watcher watcher) {
     assert path != null;
     try {
-      return zooKeeper.exists(path.withParent(rootZNode).path(), false);
+      return measure(
+          Operation.EXISTS, () -> zooKeeper.exists(path.withParent(rootZNode).path(), watcher));
     } catch (KeeperException | InterruptedException e) {
       throw new ZooKeeperClientException("Unable to check if node " + path.path() + " exist", e);
     }
   }
 
   public byte[] getContent(ZnodePath path) {
+    return getContent(path, null);
+  }
+
+  /**
+   * Retrieve the content of a node, empty for an absent node. The given watcher, if any, is armed
+   * whether the node exists or not.
+   */
+  public byte[] getContent(ZnodePath path, Watcher watcher) {
     requireNonNull(path, "path must be defined");
-    var stat = exist(path);
+    if (directRequests) {
+      return getNodeContent(path, watcher).data();
+    }
+    var stat = exist(path, watcher);
     if (stat == null) {
       return new byte[0];
     }
     var currentPath = path.withParent(rootZNode);
     try {
-      return zooKeeper.getData(currentPath.path(), false, stat);
+      return measure(Operation.GET_DATA, () -> zooKeeper.getData(currentPath.path(), false, stat));
     } catch (KeeperException | InterruptedException e) {
       throw new RuntimeException("Unable to retrieve content for path " + path.path(), e);
     }
   }
 
-  public void update(ZnodePath path, byte[] newData) {
+  public CompletableFuture<Stat> existAsync(ZnodePath path, Watcher watcher) {
     requireNonNull(path, "path must be defined");
-    requireNonNull(newData, "newData must be defined");
-    var stat = exist(path);
-    if (stat != null) {
+    var future = new CompletableFuture<Stat>();
+    var start = System.nanoTime();
+    zooKeeper.exists(
+        path.withParent(rootZNode).path(),
+        watcher,
+        (rc, nodePath, ctx, stat) -> {
+          var code = KeeperException.Code.get(rc);
+          var succeeded = code == KeeperException.Code.OK || code == KeeperException.Code.NONODE;
+          metricsRecorder.recordOperation(
+              Operation.EXISTS, System.nanoTime() - start, succeeded);
+          if (succeeded) {
+            future.complete(stat);
+          } else {
+            future.completeExceptionally(
+                new ZooKeeperClientException(
+                    "Unable to check if node " + path.path() + " exist",
+                    KeeperException.create(code, nodePath)));
+          }
+        },
+        null);
+    return future;
+  }
+
+  /**
+   * Retrieve the content of a node along with its {@link Stat}, without arming any watch. An absent
+   * node provides {@link NodeContent#ABSENT}.
+   */
+  public NodeContent getNodeContent(ZnodePath path) {
+    requireNonNull(path, "path must be defined");
+    var stat = new Stat();
+    try {
+      var data =
+          measure(
+              Operation.GET_DATA,
+              () -> zooKeeper.getData(path.withParent(rootZNode).path(), false, stat));
+      return new NodeContent(data == null ? new byte[0] : data, stat);
+    } catch (KeeperException.NoNodeException e) {
+      return NodeContent.ABSENT;
+    } catch (KeeperException | InterruptedException e) {
+      throw new ZooKeeperClientException("Unable to retrieve content for path " + path.path(), e);
+    }
+  }
+
+  /**
+   * Retrieve the content of a node along with its {@link Stat}, arming the given watcher on it. A
+   * getData request only arms a watch on an existing node, so an absent node is watched by an
+   * additional exists request, which costs a round trip only when the node is absent.
+   */
+  public NodeContent getNodeContent(ZnodePath path, Watcher watcher) {
+    requireNonNull(path, "path must be defined");
+    if (watcher == null) {
+      return getNodeContent(path);
+    }
+    var fullPath = path.withParent(rootZNode).path();
+    while (true) {
+      var stat = new Stat();
       try {
-        zooKeeper.setData(path.withParent(rootZNode).path(), newData, stat.getVersion());
+        var data =
+            measure(Operation.GET_DATA, () -> zooKeeper.getData(fullPath, watcher, stat));
+        return new NodeContent(data == null ? new byte[0] : data, stat);
+      } catch (KeeperException.NoNodeException e) {
+        if (exist(path, watcher) == null) {
+          return NodeContent.ABSENT;
+        }
+        // Created meanwhile, its content must be read again.
       } catch (KeeperException | InterruptedException e) {
-        throw new ZooKeeperClientException("Unable to update node " + path.path(), e);
+        throw new ZooKeeperClientException("Unable to retrieve content for path " + path.path(), e);
+      }
+    }
+  }
+
+  /**
+   * Retrieve asynchronously the content of a node, an absent node provides {@link
+   * NodeContent#ABSENT}. When a watcher is given, it is armed with an exists request pipelined just
+   * before the read, so it is notified of the node creation as well as of any later change.
+   */
+  public CompletableFuture<NodeContent> getNodeContentAsync(ZnodePath path, Watcher watcher) {
+    requireNonNull(path, "path must be defined");
+    var watchArmed =
+        watcher == null ? CompletableFuture.completedFuture(null) : existAsync(path, watcher);
+    var future = new CompletableFuture<NodeContent>();
+    var start = System.nanoTime();
+    zooKeeper.getData(
+        path.withParent(rootZNode).path(),
+        false,
+        (rc, nodePath, ctx, data, stat) -> {
+          var code = KeeperException.Code.get(rc);
+          metricsRecorder.recordOperation(
+              Operation.GET_DATA, System.nanoTime() - start, code == KeeperException.Code.OK);
+          if (code == KeeperException.Code.OK) {
+            future.complete(new NodeContent(data == null ? new byte[0] : data, stat));
+          } else if (code == KeeperException.Code.NONODE) {
+            future.complete(NodeContent.ABSENT);
+          } else {
+            future.completeExceptionally(
+                new ZooKeeperClientException(
+                    "Unable to retrieve content for path " + path.path(),
+                    KeeperException.create(code, nodePath)));
+          }
+        },
+        null);
+    return watchArmed.thenCombine(future, (stat, content) -> content);
+  }
+
+  /**
+   * Retrieve the content of several nodes in a single multi read, an absent node provides {@link
+   * NodeContent#ABSENT}. Contents are provided in the same order as the given paths.
+   */
+  public List<NodeContent> getNodeContents(List<ZnodePath> paths) {
+    requireNonNull(paths, "paths must be defined");
+    if (paths.isEmpty()) {
+      return List.of();
+    }
+    var operations =
+        paths.stream().map(path -> Op.getData(path.withParent(rootZNode).path())).toList();
+    try {
+      var results = measure(Operation.MULTI, () -> zooKeeper.multi(operations));
+      var contents = new ArrayList<NodeContent>(results.size());
+      for (int index = 0; index < results.size(); index++) {
+        var result = results.get(index);
+        if (result instanceof OpResult.GetDataResult dataResult) {
+          var data = dataResult.getData();
+          contents.add(new NodeContent(data == null ? new byte[0] : data, dataResult.getStat()));
+        } else {
+          var code = KeeperException.Code.get(((OpResult.ErrorResult) result).getErr());
+          if (code != KeeperException.Code.NONODE) {
+            throw new ZooKeeperClientException(
+                "Unable to retrieve content for path " + paths.get(index).path(),
+                KeeperException.create(code));
+          }
+          contents.add(NodeContent.ABSENT);
+        }
+      }
+      return contents;
+    } catch (KeeperException | InterruptedException e) {
+      throw new ZooKeeperClientException(
+          "Unable to retrieve content of " + paths.size() + " nodes", e);
+    }
+  }
+
+  /**
+   * Arm a watcher on several nodes, existing or not, without waiting for Zookeeper to answer. As
+   * requests of a session are processed in order, a read issued afterward is covered by the
+   * watches.
+   */
+  public CompletableFuture<Void> watchAll(List<ZnodePath> paths, Watcher watcher) {
+    requireNonNull(paths, "paths must be defined");
+    requireNonNull(watcher, "watcher must be defined");
+    return CompletableFuture.allOf(
+        paths.stream().map(path -> existAsync(path, watcher)).toArray(CompletableFuture[]::new));
+  }
+
+  /**
+   * Scan lazily the tree under a node, see {@link ZnodeTreeScanner}.
+   *
+   * @param path The node to scan, <code>null</code> to scan the whole tree
+   * @param selected Whether a node, given its name, must be provided
+   * @param readContent Whether the content of selected nodes must be read
+   * @param maxInFlight Maximum number of requests sent and not answered yet
+   * @return Selected nodes, along with their content if asked, in no particular order
+   */
+  public Stream<ZnodeTreeScanner.ScannedNode> scan(
+      ZnodePath path, Predicate<String> selected, boolean readContent, int maxInFlight) {
+    var fullPath = path == null ? rootZNode : path.withParent(rootZNode);
+    var scanner =
+        new ZnodeTreeScanner(
+            zooKeeper, metricsRecorder, fullPath.path(), selected, readContent, maxInFlight);
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(scanner, Spliterator.NONNULL), false);
+  }
+
+  /** Provide the path, relative to the root node, of a node given its full path. */
+  ZnodePath relativize(String fullPath) {
+    requireNonNull(fullPath, "fullPath must be defined");
+    if (!fullPath.startsWith(rootZNode.path() + "/")) {
+      throw new IllegalArgumentException(
+          "Node " + fullPath + " is not under root node " + rootZNode.path());
+    }
+    return new ZnodePath(fullPath.substring(rootZNode.path().length()));
+  }
+
+  /**
+   * Replace the content of a node, if it exists, whatever its version.
+   *
+   * @return Whether the node exists, and so has been updated
+   */
+  public boolean update(ZnodePath path, byte[] newData) {
+    requireNonNull(path, "path must be defined");
+    requireNonNull(newData, "newData must be defined");
+    var fullPath = path.withParent(rootZNode).path();
+    try {
+      if (!directRequests && exist(path) == null) {
+        return false;
       }
+      measure(Operation.SET_DATA, () -> zooKeeper.setData(fullPath, newData, -1));
+      return true;
+    } catch (KeeperException.NoNodeException e) {
+      return false;
+    } catch (KeeperException | InterruptedException e) {
+      throw new ZooKeeperClientException("Unable to update node " + path.path(), e);
     }
   }
 
-  public void deleteZNodeAndAllChildren(ZnodePath path) {
-    Stat stat = exist(path);
-    if (stat != null) {
-      childrenPaths(path.withParent(rootZNode)).forEach(this::deleteZNodeAndAllChildren);
+  /**
+   * Delete a node and every node under it. The tree is listed with pipelined requests, at most
+   * {@value #DELETE_MAX_IN_FLIGHT} in flight, then deleted deepest nodes first in multi
+   * transactions, each one kept under {@value #MAX_MULTI_REQUEST_BYTES} bytes so that it stays
+   * below the Zookeeper request size limit. A tree fitting in a single transaction is deleted
+   * atomically. Nodes deleted concurrently are skipped, and the tree is listed again when a node is
+   * concurrently created under it.
+   *
+   * @return Full paths of the deleted nodes, deepest first
+   */
+  public List<String> deleteZNodeAndAllChildren(ZnodePath path) {
+    requireNonNull(path, "path must be defined");
+    var fullPath = path.withParent(rootZNode).path();
+    var deleted = new ArrayList<String>();
+    var attempt = 0;
+    while (true) {
+      var fullPaths = new ArrayList<String>();
+      fullPaths.add(fullPath);
+      scan(path, name -> true, false, DELETE_MAX_IN_FLIGHT)
+          .forEach(node -> fullPaths.add(node.path()));
+      fullPaths.sort(Comparator.comparingLong(ZookeeperClient::depth).reversed());
       try {
-        zooKeeper.delete(path.withParent(rootZNode).path(), stat.getVersion());
-      } catch (InterruptedException | KeeperException e) {
+        deleteInBatches(fullPaths, deleted);
+        forgetPathAndChildren(fullPath);
+        return deleted;
+      } catch (KeeperException.NotEmptyException e) {
+        // A node has been created under the tree meanwhile, it must be listed again.
+        forgetPathAndChildren(fullPath);
+        if (++attempt >= MAX_DELETE_ATTEMPTS) {
+          throw new ZooKeeperClientException("Unable to delete node " + path.path(), e);
+        }
+      } catch (KeeperException | InterruptedException e) {
         throw new ZooKeeperClientException("Unable to delete node " + path.path(), e);
       }
     }
   }
 
-  public Stat watchChangeOn(ZnodePath path, Watcher watcher) {
+  private void deleteInBatches(List<String> fullPaths, List<String> deleted)
+      throws KeeperException, InterruptedException {
+    var batch = new ArrayList<String>();
+    var batchBytes = 0;
+    for (var fullPath : fullPaths) {
+      var deleteBytes = operationBytes(fullPath, null);
+      if (!batch.isEmpty() && batchBytes + deleteBytes > MAX_MULTI_REQUEST_BYTES) {
+        deleteBatch(batch, deleted);
+        batch.clear();
+        batchBytes = 0;
+      }
+      batch.add(fullPath);
+      batchBytes += deleteBytes;
+    }
+    if (!batch.isEmpty()) {
+      deleteBatch(batch, deleted);
+    }
+  }
+
+  /** A node already deleted fails the whole transaction, which is sent again without it. */
+  private void deleteBatch(List<String> batch, List<String> deleted)
+      throws KeeperException, InterruptedException {
+    var remaining = new ArrayList<>(batch);
+    while (!remaining.isEmpty()) {
+      var operations = remaining.stream().map(fullPath -> Op.delete(fullPath, -1)).toList();
+      try {
+        LOGGER.debug("Delete {} zNodes from {}", operations.size(), remaining.getFirst());
+        measure(Operation.MULTI, () -> zooKeeper.multi(operations));
+        deleted.addAll(remaining);
+        return;
+      } catch (KeeperException.NoNodeException e) {
+        if (!remaining.remove(failedOperationPath(e, operations))) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * Write nodes in as few multi transactions as the request size limit allows. The writes of a
+   * group are never split across transactions, so each group is applied entirely or not at all,
+   * but groups exceeding {@value #MAX_MULTI_REQUEST_BYTES} bytes together are written in several
+   * transactions: when one fails, the transactions committed before it are not rolled back.
+   *
+   * @return Versions of the nodes once written, in the order of the writes of every group
+   * @throws KeeperException.BadVersionException if a node does not have the expected version
+   * @throws KeeperException.NodeExistsException if a node to create already exists
+   * @throws KeeperException.NoNodeException if a node to check or update does not exist
+   */
+  public List<Integer> writeZNodes(Collection<List<NodeWrite>> groups)
+      throws KeeperException, InterruptedException {
+    requireNonNull(groups, "groups must be defined");
+    var versions = new ArrayList<Integer>();
+    var writes = new ArrayList<NodeWrite>();
+    var operations = new ArrayList<Op>();
+    var transactionBytes = 0;
+    for (var group : groups) {
+      var groupBytes = 0;
+      var groupOperations = new ArrayList<Op>(group.size());
+      for (var write : group) {
+        var fullPath = write.path().withParent(rootZNode).path();
+        groupBytes += operationBytes(fullPath, write.data());
+        groupOperations.add(write.toOperation(fullPath));
+      }
+      if (!operations.isEmpty() && transactionBytes + groupBytes > MAX_MULTI_REQUEST_BYTES) {
+        versions.addAll(commit(writes, operations));
+        writes.clear();
+        operations.clear();
+        transactionBytes = 0;
+      }
+      writes.addAll(group);
+      operations.addAll(groupOperations);
+      transactionBytes += groupBytes;
+    }
+    if (!operations.isEmpty()) {
+      versions.addAll(commit(writes, operations));
+    }
+    return versions;
+  }
+
+  private List<Integer> commit(List<NodeWrite> writes, List<Op> operations)
+      throws KeeperException, InterruptedException {
+    LOGGER.debug("Write {} zNodes in one transaction", operations.size());
+    var results = measure(Operation.MULTI, () -> zooKeeper.multi(operations));
+    var versions = new ArrayList<Integer>(results.size());
+    for (var index = 0; index < results.size(); index++) {
+      versions.add(
+          switch (results.get(index)) {
+            case OpResult.SetDataResult setData -> setData.getStat().getVersion();
+            case OpResult.CreateResult created -> 0;
+            default -> writes.get(index).version();
+          });
+    }
+    return versions;
+  }
+
+  private static int operationBytes(String fullPath, byte[] data) {
+    return fullPath.getBytes(StandardCharsets.UTF_8).length
+        + (data == null ? 0 : data.length)
+        + OPERATION_OVERHEAD_BYTES;
+  }
+
+  private static long depth(String fullPath) {
+    return fullPath.chars().filter(character -> character == '/').count();
+  }
+
+  public void watchRecursively(ZnodePath path, Watcher watcher) {
+    requireNonNull(path, "path must be defined");
+    requireNonNull(watcher, "watcher must be defined");
+    try {
+      measure(
+          Operation.ADD_WATCH,
+          () -> {
+            zooKeeper.addWatch(
+                path.withParent(rootZNode).path(), watcher, AddWatchMode.PERSISTENT_RECURSIVE);
+            return null;
+          });
+    } catch (KeeperException | InterruptedException e) {
+      throw new ZooKeeperClientException("Unable to watch recursively node " + path.path(), e);
+    }
+  }
+
+  /**
+   * Remove a watcher from a node and its subtree, even when Zookeeper cannot be reached, see {@link
+   * #watchRecursively}.
+   */
+  public void unwatchRecursively(ZnodePath path, Watcher watcher) {
+    requireNonNull(path, "path must be defined");
+    requireNonNull(watcher, "watcher must be defined");
     try {
-      return zooKeeper.exists(path.withParent(rootZNode).path(), watcher);
+      zooKeeper.removeWatches(
+          path.withParent(rootZNode).path(), watcher, Watcher.WatcherType.Any, true);
+    } catch (KeeperException.NoWatcherException e) {
+      LOGGER.debug("Node {} is no longer watched", path.path());
     } catch (KeeperException | InterruptedException e) {
-      throw new RuntimeException("Unable to watch changes on node " + path.path(), e);
+      throw new ZooKeeperClientException("Unable to unwatch node " + path.path(), e);
+    }
+  }
+
+  /**
+   * Remove a watcher from several nodes without waiting for Zookeeper to answer, even when it
+   * cannot be reached. A node on which the watcher is no longer armed, as it was triggered, is
+   * ignored.
+   */
+  public void unwatchAll(Collection<ZnodePath> paths, Watcher watcher) {
+    requireNonNull(paths, "paths must be defined");
+    requireNonNull(watcher, "watcher must be defined");
+    for (var path : paths) {
+      zooKeeper.removeWatches(
+          path.withParent(rootZNode).path(),
+          watcher,
+          Watcher.WatcherType.Any,
+          true,
+          (rc, nodePath, ctx) -> {
+            var code = KeeperException.Code.get(rc);
+            if (code != KeeperException.Code.OK && code != KeeperException.Code.NOWATCHER) {
+              LOGGER.debug("Unable to unwatch node {}: {}", nodePath, code);
+            }
+          },
+          null);
+    }
+  }
+
+  /**
+   * Content of a node along with the {@link Stat} it was read with.
+   *
+   * @param data Content of the node, empty for an absent node
+   * @param stat Stat of the node, <code>null</code> for an absent node
+   */
+  record NodeContent(byte[] data, Stat stat) {
+
+    static final NodeContent ABSENT = new NodeContent(new byte[0], null);
+  }
+
+  /**
+   * A write of a multi transaction, built with {@link #check}, {@link #create} or {@link
+   * #setData}.
+   *
+   * @param kind What the write does
+   * @param path Path of the node
+   * @param data Content to write, <code>null</code> for a check
+   * @param version Version the node must have, {@link #ANY_VERSION} for any version
+   */
+  record NodeWrite(Kind kind, ZnodePath path, byte[] data, int version) {
+
+    static final int ANY_VERSION = -1;
+
+    enum Kind {
+      CHECK,
+      CREATE,
+      SET_DATA
+    }
+
+    NodeWrite {
+      requireNonNull(kind, "kind must be defined");
+      requireNonNull(path, "path must be defined");
+      if (kind != Kind.CHECK) {
+        requireNonNull(data, "data must be defined");
+      }
+    }
+
+    /** Check a node still has the given version, without changing it. */
+    static NodeWrite check(ZnodePath path, int version) {
+      return new NodeWrite(Kind.CHECK, path, null, version);
+    }
+
+    /** Create a node, which must not exist. */
+    static NodeWrite create(ZnodePath path, byte[] data) {
+      return new NodeWrite(Kind.CREATE, path, data, ANY_VERSION);
+    }
+
+    /** Replace the content of a node, which must have the given version. */
+    static NodeWrite setData(ZnodePath path, byte[] data, int version) {
+      return new NodeWrite(Kind.SET_DATA, path, data, version);
+    }
+
+    private Op toOperation(String fullPath) {
+      return switch (kind) {
+        case CHECK -> Op.check(fullPath, version);
+        case CREATE ->
+            Op.create(fullPath, data, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        case SET_DATA -> Op.setData(fullPath, data, version);
+      };
     }
   }
 
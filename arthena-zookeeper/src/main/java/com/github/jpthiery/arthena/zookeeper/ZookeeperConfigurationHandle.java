@@ -0,0 +1,103 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import com.github.jpthiery.arthena.ConfigurationHandle;
+import com.github.jpthiery.arthena.domain.ConfigurationKey;
+import com.github.jpthiery.arthena.domain.Environment;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * {@link ConfigurationHandle} resolved again by the {@link NotificationDispatcher} each time one of
+ * the nodes its value depends on changes, reading it is a single volatile read.
+ */
+class ZookeeperConfigurationHandle<T>
+    implements ConfigurationHandle<T>, ZnodeEventRouter.NodeListener {
+
+  private final ConfigurationKey key;
+
+  private final Environment environment;
+
+  private final Supplier<Optional<T>> resolver;
+
+  private final NotificationDispatcher notificationDispatcher;
+
+  private final CompletableFuture<Void> initialized;
+
+  private volatile Optional<T> value;
+
+  private volatile ZnodeEventRouter eventRouter;
+
+  private volatile List<ZnodePath> dependencies;
+
+  private volatile boolean closed;
+
+  ZookeeperConfigurationHandle(
+      ConfigurationKey key,
+      Environment environment,
+      Supplier<Optional<T>> resolver,
+      NotificationDispatcher notificationDispatcher) {
+    this.key = key;
+    this.environment = environment;
+    this.resolver = resolver;
+    this.notificationDispatcher = notificationDispatcher;
+    this.initialized = new CompletableFuture<>();
+  }
+
+  void start(ZnodeEventRouter eventRouter, List<ZnodePath> dependencies) {
+    this.eventRouter = eventRouter;
+    this.dependencies = List.copyOf(dependencies);
+    dependencies.forEach(path -> eventRouter.register(path, this));
+    try {
+      notificationDispatcher.dispatchAndWait(this, this::refresh, initialized);
+    } catch (CompletionException e) {
+      dependencies.forEach(path -> eventRouter.unregister(path, this));
+      throw new ZookeeperClient.ZooKeeperClientException(
+          "Unable to resolve value of key " + key.key(), e.getCause());
+    }
+  }
+
+  @Override
+  public ConfigurationKey key() {
+    return key;
+  }
+
+  @Override
+  public Environment environment() {
+    return environment;
+  }
+
+  @Override
+  public Optional<T> get() {
+    return value;
+  }
+
+  /** Unregister from the nodes the value depends on, so no change resolves it again. */
+  @Override
+  public void close() {
+    closed = true;
+    if (eventRouter != null) {
+      dependencies.forEach(path -> eventRouter.unregister(path, this));
+    }
+  }
+
+  @Override
+  public void nodeChanged() {
+    notificationDispatcher.dispatch(this, this::refresh);
+  }
+
+  private void refresh() {
+    if (closed || initialized.isCompletedExceptionally()) {
+      return;
+    }
+    try {
+      value = resolver.get();
+      initialized.complete(null);
+    } catch (RuntimeException e) {
+      initialized.completeExceptionally(e);
+      throw e;
+    }
+  }
+}
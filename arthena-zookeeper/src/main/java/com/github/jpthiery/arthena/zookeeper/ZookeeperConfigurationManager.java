@@ -3,14 +3,17 @@ package com.github.jpthiery.arthena.zookeeper;
 import static java.util.Objects.requireNonNull;
 import static org.slf4j.LoggerFactory.getLogger;
 
-import com.github.jpthiery.arthena.ConfigurationKeyLockTemplate;
 import com.github.jpthiery.arthena.ConfigurationManager;
 import com.github.jpthiery.arthena.domain.Configuration;
 import com.github.jpthiery.arthena.domain.ConfigurationEntry;
 import com.github.jpthiery.arthena.domain.ConfigurationKey;
 import com.github.jpthiery.arthena.domain.Environment;
+import com.github.jpthiery.arthena.domain.ValueDefinition;
+import com.github.jpthiery.arthena.metrics.MetricsRecorder;
 import com.github.jpthiery.arthena.zookeeper.json.JsonDataMarshaller;
 import java.util.*;
+import java.util.stream.Stream;
+import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.ZooKeeper;
 import org.slf4j.Logger;
 
@@ -22,43 +25,76 @@ public class ZookeeperConfigurationManager implements ConfigurationManager {
 
   static final ZnodePath VALUE = new ZnodePath("/value");
 
+  static final String CONFIG_NODE_NAME = CONFIG.pathSplit().getFirst();
+
+  static final String VALUE_NODE_NAME = VALUE.pathSplit().getFirst();
+
+  private static final int SCAN_MAX_IN_FLIGHT = 64;
+
+  private static final int READ_BATCH_SIZE = 256;
+
+  private static final int MAX_WRITE_ATTEMPTS = 5;
+
   private final ZookeeperClient zookeeperClient;
 
   private final DataMarshaller dataMarshaller;
 
-  private final ConfigurationKeyLockTemplate lockTemplate;
+  private final ParseCache configurationCache;
 
-  public ZookeeperConfigurationManager(ZooKeeper zooKeeper, DataMarshaller dataMarshaller) {
+  /**
+   * @param zooKeeper Zookeeper session used to store configurations
+   * @param dataMarshaller Marshaller of stored data, <code>null</code> to use Json
+   * @param metricsRecorder Recorder of Zookeeper operations and marshalling, <code>null</code> to
+   *     not record anything
+   * @param directRequests Send getData and setData requests directly, an absent node being
+   *     reported by a NoNode error, rather than checking its existence first
+   */
+  public ZookeeperConfigurationManager(
+      ZooKeeper zooKeeper,
+      DataMarshaller dataMarshaller,
+      MetricsRecorder metricsRecorder,
+      boolean directRequests) {
     requireNonNull(zooKeeper, "zooKeeper must be defined");
-    this.zookeeperClient = new ZookeeperClient(zooKeeper);
-    this.dataMarshaller = Objects.requireNonNullElseGet(dataMarshaller, JsonDataMarshaller::new);
-    this.lockTemplate = new ConfigurationKeyLockTemplate();
+    var currentRecorder = Objects.requireNonNullElse(metricsRecorder, MetricsRecorder.NOOP);
+    this.zookeeperClient = new ZookeeperClient(zooKeeper, null, currentRecorder, directRequests);
+    this.dataMarshaller =
+        MeasuredDataMarshaller.measure(
+            Objects.requireNonNullElseGet(dataMarshaller, JsonDataMarshaller::new),
+            currentRecorder);
+    this.configurationCache = new ParseCache();
+  }
+
+  public ZookeeperConfigurationManager(
+      ZooKeeper zooKeeper, DataMarshaller dataMarshaller, MetricsRecorder metricsRecorder) {
+    this(zooKeeper, dataMarshaller, metricsRecorder, false);
+  }
+
+  public ZookeeperConfigurationManager(ZooKeeper zooKeeper, DataMarshaller dataMarshaller) {
+    this(zooKeeper, dataMarshaller, null);
   }
 
   public ZookeeperConfigurationManager(ZooKeeper zooKeeper) {
     this(zooKeeper, null);
   }
 
+  /** A configuration stored concurrently by several clients ends with the last one written. */
   @Override
   public void store(Configuration<?> configuration) {
     requireNonNull(configuration, "configuration must be defined");
     var key = configuration.key();
     try {
-      lockTemplate.operateWithLockOnConfiguration(
-          key,
-          () -> {
-            var paths = ZnodePath.from(key);
-            var configData = dataMarshaller.toByteArray(configuration);
-            var stat = zookeeperClient.exist(CONFIG.withParent(paths));
-            if (stat != null) {
-              zookeeperClient.update(paths, configData);
-            } else {
-              var valueData = dataMarshaller.toByteArray(configuration.defaultVariant());
-              var rootConfigPath = zookeeperClient.createZNode(paths);
-              zookeeperClient.createZNode(CONFIG.withParent(rootConfigPath), configData);
-              zookeeperClient.createZNode(VALUE.withParent(rootConfigPath), valueData);
-            }
-          });
+      var paths = ZnodePath.from(key);
+      var configPath = CONFIG.withParent(paths);
+      var configData = dataMarshaller.toByteArray(configuration);
+      var valueData = dataMarshaller.toByteArray(configuration.defaultVariant());
+      var nodes = new LinkedHashMap<ZnodePath, byte[]>();
+      nodes.put(configPath, configData);
+      nodes.put(VALUE.withParent(paths), valueData);
+      try {
+        zookeeperClient.createZNodes(nodes);
+      } catch (KeeperException.NodeExistsException alreadyStored) {
+        zookeeperClient.update(configPath, configData);
+      }
     } catch (Exception e) {
       throw new RuntimeException(
           "An error occurred while trying to store configuration key "
@@ -73,22 +109,13 @@ public class ZookeeperConfigurationManager implements ConfigurationManager {
       throws ConfigurationNotFound {
     requireNonNull(key, "key must be defined");
     requireNonNull(value, "value must be defined");
-    var path = ZnodePath.from(key);
     try {
-      lockTemplate.operateWithLockOnConfiguration(
-          key,
-          () -> {
-            var stat = zookeeperClient.exist(path);
-            if (stat == null) {
-              throw new ConfigurationNotFound(key);
-            }
-            checkConfigurationEntryIsValid(key, value, tClass);
-            var valuePath = VALUE.withParent(path);
-            zookeeperClient.update(valuePath, dataMarshaller.toByteArray(value));
-          });
+      writeValue(new ValueDefinition<>(key, value, tClass), null);
     } catch (Exception e) {
       if (e instanceof ConfigurationNotFound notFound) {
         throw notFound;
+      } else if (e instanceof IllegalArgumentException notValidEntry) {
+        throw notValidEntry;
       }
       throw new RuntimeException("Unable to define value for configuration " + key.key(), e);
     }
@@ -101,29 +128,36 @@ public class ZookeeperConfigurationManager implements ConfigurationManager {
     requireNonNull(key, "key must be defined");
     requireNonNull(environment, "environment must be defined");
     requireNonNull(value, "value must be defined");
-    var path = ZnodePath.from(key);
     try {
-      lockTemplate.operateWithLockOnConfiguration(
-          key,
-          () -> {
-            var stat = zookeeperClient.exist(path);
-            if (stat == null) {
-              throw new ConfigurationNotFound(key);
-            }
-            checkConfigurationEntryIsValid(key, value, tClass);
-            var valuePath = ZnodePath.from(environment).withParent(path);
-            byte[] data = dataMarshaller.toByteArray(value);
-            var valueStat = zookeeperClient.exist(valuePath);
-            if (valueStat == null) {
-              zookeeperClient.createZNode(valuePath, data);
-            } else {
-              zookeeperClient.update(valuePath, data);
-            }
-          });
+      writeValue(new ValueDefinition<>(key, environment, value, tClass), null);
+    } catch (Exception e) {
+      if (e instanceof ConfigurationNotFound notFound) {
+        throw notFound;
+      } else if (e instanceof IllegalArgumentException notValidEntry) {
+        throw notValidEntry;
+      }
+      throw new RuntimeException("Unable to define value for configuration " + key.key(), e);
+    }
+  }
 
+  /** The version of a value is the version of its node. */
+  @Override
+  public <T> long defineValue(
+      ConfigurationKey key,
+      Environment environment,
+      ConfigurationEntry<T> value,
+      Class<T> tClass,
+      long expectedVersion)
+      throws ConfigurationNotFound, ConcurrentModification {
+    requireNonNull(key, "key must be defined");
+    requireNonNull(value, "value must be defined");
+    try {
+      return writeValue(new ValueDefinition<>(key, environment, value, tClass), expectedVersion);
     } catch (Exception e) {
       if (e instanceof ConfigurationNotFound notFound) {
         throw notFound;
+      } else if (e instanceof ConcurrentModification concurrentModification) {
+        throw concurrentModification;
       } else if (e instanceof IllegalArgumentException notValidEntry) {
         throw notValidEntry;
       }
@@ -131,6 +165,192 @@ public class ZookeeperConfigurationManager implements ConfigurationManager {
     }
   }
 
+  @Override
+  public long valueVersion(ConfigurationKey key, Environment environment)
+      throws ConfigurationNotFound {
+    requireNonNull(key, "key must be defined");
+    var keyPath = ZnodePath.from(key);
+    var contents =
+        zookeeperClient.getNodeContents(
+            List.of(CONFIG.withParent(keyPath), valuePath(keyPath, environment)));
+    if (contents.getFirst().stat() == null || contents.getFirst().data().length == 0) {
+      throw new ConfigurationNotFound(key);
+    }
+    return versionOf(contents.get(1));
+  }
+
+  /**
+   * Configuration and value nodes are read in multi reads of {@value #READ_BATCH_SIZE} nodes, and
+   * configurations are only decoded when they changed since a previous call. The values of a
+   * configuration are written in a same transaction as a check that the configuration is unchanged,
+   * so a configuration stored again meanwhile makes every value be checked again.
+   */
+  @Override
+  public void defineValues(Collection<ValueDefinition<?>> definitions)
+      throws ConfigurationNotFound {
+    requireNonNull(definitions, "definitions must be defined");
+    var valueDefinitions = new LinkedHashMap<ZnodePath, ValueDefinition<?>>();
+    for (var definition : definitions) {
+      requireNonNull(definition, "definition must be defined");
+      var valuePath = valuePath(ZnodePath.from(definition.key()), definition.environment());
+      valueDefinitions.remove(valuePath);
+      valueDefinitions.put(valuePath, definition);
+    }
+    if (valueDefinitions.isEmpty()) {
+      return;
+    }
+    try {
+      writeValues(valueDefinitions, Map.of());
+    } catch (Exception e) {
+      if (e instanceof ConfigurationNotFound notFound) {
+        throw notFound;
+      } else if (e instanceof IllegalArgumentException notValidEntry) {
+        throw notValidEntry;
+      }
+      throw new RuntimeException(
+          "Unable to define " + valueDefinitions.size() + " configuration values", e);
+    }
+  }
+
+  /**
+   * @param expectedVersion Version the value must have, <code>null</code> to define it whatever
+   *     its version
+   * @return Version of the defined value
+   */
+  private long writeValue(ValueDefinition<?> definition, Long expectedVersion)
+      throws ConfigurationNotFound,
+          ConcurrentModification,
+          KeeperException,
+          InterruptedException {
+    var valuePath = valuePath(ZnodePath.from(definition.key()), definition.environment());
+    var valueDefinitions = new LinkedHashMap<ZnodePath, ValueDefinition<?>>();
+    valueDefinitions.put(valuePath, definition);
+    var expectedVersions =
+        expectedVersion == null
+            ? Map.<ZnodePath, Long>of()
+            : Map.of(valuePath, expectedVersion);
+    // The version of the value follows the one of its checked configuration.
+    return writeValues(valueDefinitions, expectedVersions).get(1);
+  }
+
+  /**
+   * Check then write values, as long as no configuration, nor value of an expected version, has
+   * been changed by a concurrent client in between, trying again at most {@value
+   * #MAX_WRITE_ATTEMPTS} times otherwise.
+   *
+   * @return Versions of the written nodes, see {@link ZookeeperClient#writeZNodes}
+   */
+  private List<Integer> writeValues(
+      SequencedMap<ZnodePath, ValueDefinition<?>> valueDefinitions,
+      Map<ZnodePath, Long> expectedVersions)
+      throws ConfigurationNotFound,
+          ConcurrentModification,
+          KeeperException,
+          InterruptedException {
+    var attempt = 0;
+    while (true) {
+      var writes = checkedValueWrites(valueDefinitions, expectedVersions);
+      try {
+        return zookeeperClient.writeZNodes(writes);
+      } catch (KeeperException.BadVersionException
+          | KeeperException.NodeExistsException
+          | KeeperException.NoNodeException e) {
+        if (++attempt >= MAX_WRITE_ATTEMPTS) {
+          throw e;
+        }
+        LOGGER.debug("Concurrent modification while defining values, try again", e);
+      }
+    }
+  }
+
+  /**
+   * Read the configurations and value nodes, then provide per configuration the check that it is
+   * unchanged followed by the writes of its values. Values without expected version are written
+   * whatever their version.
+   */
+  private Collection<List<ZookeeperClient.NodeWrite>> checkedValueWrites(
+      SequencedMap<ZnodePath, ValueDefinition<?>> valueDefinitions,
+      Map<ZnodePath, Long> expectedVersions)
+      throws ConfigurationNotFound, ConcurrentModification {
+    var configPaths = new LinkedHashMap<ConfigurationKey, ZnodePath>();
+    valueDefinitions
+        .values()
+        .forEach(
+            definition ->
+                configPaths.computeIfAbsent(
+                    definition.key(), key -> CONFIG.withParent(ZnodePath.from(key))));
+    var paths = new ArrayList<ZnodePath>(configPaths.values());
+    paths.addAll(valueDefinitions.keySet());
+    var contents = new ArrayList<ZookeeperClient.NodeContent>(paths.size());
+    for (var start = 0; start < paths.size(); start += READ_BATCH_SIZE) {
+      var batch = paths.subList(start, Math.min(start + READ_BATCH_SIZE, paths.size()));
+      contents.addAll(zookeeperClient.getNodeContents(batch));
+    }
+    var configContents = new HashMap<ConfigurationKey, ZookeeperClient.NodeContent>();
+    var writes = new LinkedHashMap<ConfigurationKey, List<ZookeeperClient.NodeWrite>>();
+    var index = 0;
+    for (var entry : configPaths.entrySet()) {
+      var content = contents.get(index++);
+      if (content.stat() == null || content.data().length == 0) {
+        throw new ConfigurationNotFound(entry.getKey());
+      }
+      configContents.put(entry.getKey(), content);
+      var configWrites = new ArrayList<ZookeeperClient.NodeWrite>();
+      configWrites.add(
+          ZookeeperClient.NodeWrite.check(entry.getValue(), content.stat().getVersion()));
+      writes.put(entry.getKey(), configWrites);
+    }
+    for (var entry : valueDefinitions.entrySet()) {
+      var definition = entry.getValue();
+      var key = definition.key();
+      var valueContent = contents.get(index++);
+      var expectedVersion = expectedVersions.get(entry.getKey());
+      if (expectedVersion != null && expectedVersion != versionOf(valueContent)) {
+        throw new ConcurrentModification(key);
+      }
+      checkValueDefinitionIsValid(definition, configPaths.get(key), configContents.get(key));
+      var data = dataMarshaller.toByteArray(definition.value());
+      writes
+          .get(key)
+          .add(
+              valueContent.stat() == null
+                  ? ZookeeperClient.NodeWrite.create(entry.getKey(), data)
+                  : ZookeeperClient.NodeWrite.setData(
+                      entry.getKey(),
+                      data,
+                      expectedVersion == null
+                          ? ZookeeperClient.NodeWrite.ANY_VERSION
+                          : valueContent.stat().getVersion()));
+    }
+    return writes.values();
+  }
+
+  private <T> void checkValueDefinitionIsValid(
+      ValueDefinition<T> definition,
+      ZnodePath configPath,
+      ZookeeperClient.NodeContent configContent) {
+    Configuration<?> configuration =
+        configurationCache.parse(
+            configPath,
+            configContent,
+            definition.tClass(),
+            dataMarshaller::configurationFromByteArray);
+    if (!configuration.variants().contains(definition.value())) {
+      throw new IllegalArgumentException(
+          "ConfigurationEntry not eligible to key " + definition.key().key());
+    }
+  }
+
+  private static ZnodePath valuePath(ZnodePath keyPath, Environment environment) {
+    return environment == null
+        ? VALUE.withParent(keyPath)
+        : ZnodePath.from(environment).withParent(keyPath);
+  }
+
+  private static long versionOf(ZookeeperClient.NodeContent content) {
+    return content.stat() == null ? UNDEFINED_VERSION : content.stat().getVersion();
+  }
+
   @Override
   public void delete(ConfigurationKey key) {
     requireNonNull(key, "key must be defined");
@@ -138,24 +358,38 @@ public class ZookeeperConfigurationManager implements ConfigurationManager {
     zookeeperClient.deleteZNodeAndAllChildren(path);
   }
 
+  /**
+   * The tree under the prefix is listed with pipelined requests then deleted in multi
+   * transactions, deepest nodes first, a small enough namespace being deleted atomically.
+   */
+  @Override
+  public int deletePrefix(ConfigurationKey prefix) {
+    requireNonNull(prefix, "prefix must be defined");
+    var deleted =
+        (int)
+            zookeeperClient.deleteZNodeAndAllChildren(ZnodePath.from(prefix)).stream()
+                .filter(fullPath -> fullPath.endsWith("/" + CONFIG_NODE_NAME))
+                .count();
+    LOGGER.debug("Deleted {} configurations under {}", deleted, prefix.key());
+    return deleted;
+  }
+
   @Override
   public List<Configuration<?>> list() {
-    throw new UnsupportedOperationException("Not yet implemented");
+    return stream().toList();
   }
 
-  private <T> void checkConfigurationEntryIsValid(
-      ConfigurationKey key, ConfigurationEntry<T> configurationEntry, Class<T> tClass)
-      throws ConfigurationNotFound {
-    var keyPath = ZnodePath.from(key);
-    var stat = zookeeperClient.exist(keyPath);
-    if (stat == null) {
-      throw new ConfigurationNotFound(key);
-    }
-    var configurationContent = zookeeperClient.getContent(CONFIG.withParent(keyPath));
-    Configuration<?> configuration =
-        dataMarshaller.configurationFromByteArray(configurationContent, tClass);
-    if (!configuration.variants().contains(configurationEntry)) {
-      throw new IllegalArgumentException("ConfigurationEntry not eligible to key " + key.key());
-    }
+  /**
+   * The tree is walked with pipelined requests, at most {@value #SCAN_MAX_IN_FLIGHT} in flight, and
+   * only as the stream is consumed. Values are decoded as {@link Object}, which the {@link
+   * DataMarshaller} in use must support.
+   */
+  @Override
+  public Stream<Configuration<?>> stream() {
+    return zookeeperClient
+        .scan(null, CONFIG_NODE_NAME::equals, true, SCAN_MAX_IN_FLIGHT)
+        .<Configuration<?>>map(
+            node -> dataMarshaller.configurationFromByteArray(node.content().data(), Object.class))
+        .filter(Objects::nonNull);
   }
 }
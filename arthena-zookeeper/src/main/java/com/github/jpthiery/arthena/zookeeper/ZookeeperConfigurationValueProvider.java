@@ -2,37 +2,231 @@ package com.github.jpthiery.arthena.zookeeper;
 
 import static com.github.jpthiery.arthena.zookeeper.ZookeeperConfigurationManager.*;
 import static java.util.Objects.requireNonNull;
+import static java.util.Objects.requireNonNullElse;
 import static java.util.Objects.requireNonNullElseGet;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import com.github.jpthiery.arthena.ConfigurationHandle;
 import com.github.jpthiery.arthena.ConfigurationKeyLockTemplate;
 import com.github.jpthiery.arthena.ConfigurationValueProvider;
 import com.github.jpthiery.arthena.ValueChangeListener;
+import com.github.jpthiery.arthena.domain.Configuration;
 import com.github.jpthiery.arthena.domain.ConfigurationEntry;
 import com.github.jpthiery.arthena.domain.ConfigurationKey;
 import com.github.jpthiery.arthena.domain.Environment;
-import com.github.jpthiery.arthena.zookeeper.json.JsonDataMarshaller;
+import com.github.jpthiery.arthena.metrics.MetricsRecorder;
+import com.github.jpthiery.arthena.zookeeper.json.FormatDetectingDataMarshaller;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
-import org.apache.zookeeper.WatchedEvent;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.IntSupplier;
+import java.util.stream.Stream;
 import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.ZooKeeper;
 import org.slf4j.Logger;
 
-public class ZookeeperConfigurationValueProvider implements ConfigurationValueProvider {
+public class ZookeeperConfigurationValueProvider
+    implements ConfigurationValueProvider, AutoCloseable {
 
   private static final Logger LOGGER = getLogger(ZookeeperConfigurationValueProvider.class);
 
+  private static final int PREFETCH_MAX_IN_FLIGHT = 64;
+
+  private static final int PREFETCH_BATCH_SIZE = 256;
+
+  private static final int READ_BATCH_SIZE = 256;
+
   private final ZookeeperClient zookeeperClient;
 
   private final DataMarshaller dataMarshaller;
 
   private final ConfigurationKeyLockTemplate lockTemplate;
 
-  public ZookeeperConfigurationValueProvider(ZooKeeper zookeeper, DataMarshaller dataMarshaller) {
+  private final ValueCache valueCache;
+
+  private final ValueProviderOptions.ReadMode readMode;
+
+  private final ParseCache parseCache;
+
+  private final ZnodeEventRouter eventRouter;
+
+  private final NotificationDispatcher notificationDispatcher;
+
+  private final Path snapshotFile;
+
+  private final LocalNodeStore nodeStore;
+
+  private final ScheduledExecutorService snapshotScheduler;
+
+  private final MetricsRecorder metricsRecorder;
+
+  private final IntSupplier activeWatchers;
+
+  private volatile boolean closed;
+
+  public ZookeeperConfigurationValueProvider(
+      ZooKeeper zookeeper, DataMarshaller dataMarshaller, ValueProviderOptions options) {
     requireNonNull(zookeeper, "zookeeper must be defined");
-    this.zookeeperClient = new ZookeeperClient(zookeeper);
-    this.dataMarshaller = requireNonNullElseGet(dataMarshaller, JsonDataMarshaller::new);
-    this.lockTemplate = new ConfigurationKeyLockTemplate();
+    var currentOptions = requireNonNullElseGet(options, ValueProviderOptions::defaults);
+    this.metricsRecorder =
+        requireNonNullElse(currentOptions.metricsRecorder(), MetricsRecorder.NOOP);
+    this.zookeeperClient =
+        new ZookeeperClient(zookeeper, null, metricsRecorder, currentOptions.directRequests());
+    this.dataMarshaller =
+        MeasuredDataMarshaller.measure(
+            requireNonNullElseGet(
+                dataMarshaller,
+                () -> new FormatDetectingDataMarshaller(FormatDetectingDataMarshaller.Format.JSON)),
+            metricsRecorder);
+    this.lockTemplate = new ConfigurationKeyLockTemplate(metricsRecorder);
+    this.valueCache =
+        currentOptions.cacheValues() ? new ValueCache(zookeeperClient.rootZNode) : null;
+    this.readMode = currentOptions.readMode();
+    this.parseCache = new ParseCache();
+    this.eventRouter = new ZnodeEventRouter(zookeeperClient);
+    this.notificationDispatcher =
+        new NotificationDispatcher(
+            requireNonNullElse(
+                currentOptions.notificationExecutor(),
+                task -> Thread.ofVirtual().name("arthena-notification").start(task)));
+    this.snapshotFile = currentOptions.snapshotFile();
+    this.nodeStore =
+        snapshotFile == null && !currentOptions.storeNodesLocally()
+            ? null
+            : new LocalNodeStore(zookeeperClient, this::nodeChanged);
+    this.snapshotScheduler =
+        snapshotFile == null
+            ? null
+            : restoreSnapshot(nodeStore, snapshotFile, currentOptions.snapshotInterval());
+    this.activeWatchers = activeWatchers(eventRouter, valueCache, nodeStore);
+    metricsRecorder.bindActiveWatchers(activeWatchers);
+  }
+
+  /**
+   * Count listeners served by the recursive watch, and nodes watched by caches. The count only
+   * refers to these components, so the provider does not escape its constructor through it.
+   */
+  private static IntSupplier activeWatchers(
+      ZnodeEventRouter eventRouter, ValueCache valueCache, LocalNodeStore nodeStore) {
+    return () ->
+        eventRouter.listenerCount()
+            + (valueCache == null ? 0 : valueCache.watchedPathCount())
+            + (nodeStore == null ? 0 : nodeStore.size());
+  }
+
+  private static ScheduledExecutorService restoreSnapshot(
+      LocalNodeStore nodeStore, Path snapshotFile, Duration snapshotInterval) {
+    try {
+      nodeStore.restore(NodeSnapshotFile.read(snapshotFile));
+    } catch (IOException e) {
+      LOGGER.warn("Unable to restore snapshot {}, nodes are read from Zookeeper", snapshotFile, e);
+    }
+    nodeStore.reconcile();
+    var scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("arthena-snapshot").factory());
+    scheduler.scheduleWithFixedDelay(
+        () -> {
+          try {
+            nodeStore.reconcile();
+            writeSnapshot(nodeStore, snapshotFile);
+          } catch (RuntimeException e) {
+            LOGGER.warn("Unable to write snapshot {}", snapshotFile, e);
+          }
+        },
+        snapshotInterval.toMillis(),
+        snapshotInterval.toMillis(),
+        TimeUnit.MILLISECONDS);
+    return scheduler;
+  }
+
+  private void nodeChanged(String fullPath) {
+    if (valueCache != null) {
+      valueCache.invalidatePath(fullPath);
+    }
+  }
+
+  /**
+   * Write the snapshot file right away, rather than waiting for the next periodic write, for
+   * instance before shutting down.
+   *
+   * @throws IllegalStateException if no snapshot file is defined in options, or if the provider is
+   *     closed
+   */
+  public void writeSnapshot() {
+    requireOpen();
+    if (snapshotFile == null) {
+      throw new IllegalStateException("No snapshot file defined");
+    }
+    writeSnapshot(nodeStore, snapshotFile);
+  }
+
+  private static void writeSnapshot(LocalNodeStore nodeStore, Path snapshotFile) {
+    try {
+      NodeSnapshotFile.write(snapshotFile, nodeStore.contents());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to write snapshot " + snapshotFile, e);
+    }
+  }
+
+  /**
+   * Release every watch and listener of the provider, and write the snapshot file a last time. No
+   * listener is notified once closed, and further reads and subscriptions are rejected. The
+   * Zookeeper session, owned by the caller, is left open.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (snapshotScheduler != null) {
+      stopSnapshots();
+    }
+    eventRouter.close();
+    if (nodeStore != null) {
+      nodeStore.close();
+    }
+    if (valueCache != null) {
+      zookeeperClient.unwatchAll(
+          valueCache.watchedPaths().stream().map(zookeeperClient::relativize).toList(),
+          valueCache);
+      valueCache.invalidateAll();
+    }
+    metricsRecorder.unbindActiveWatchers(activeWatchers);
+  }
+
+  private void stopSnapshots() {
+    snapshotScheduler.shutdown();
+    try {
+      if (!snapshotScheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+        LOGGER.warn("Periodic write of snapshot {} did not stop in time", snapshotFile);
+      }
+      writeSnapshot(nodeStore, snapshotFile);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Unable to write snapshot {}", snapshotFile, e);
+    }
+  }
+
+  private void requireOpen() {
+    if (closed) {
+      throw new IllegalStateException("Provider is closed");
+    }
+  }
+
+  public ZookeeperConfigurationValueProvider(ZooKeeper zookeeper, DataMarshaller dataMarshaller) {
+    this(zookeeper, dataMarshaller, null);
   }
 
   public ZookeeperConfigurationValueProvider(ZooKeeper zookeeper) {
@@ -48,35 +242,425 @@ public class ZookeeperConfigurationValueProvider implements ConfigurationValuePr
   public <T> Optional<T> getValue(ConfigurationKey key, Environment environment, Class<T> tClass) {
     requireNonNull(key, "key must be defined");
     requireNonNull(tClass, "tClass must be defined");
+    requireOpen();
+    try {
+      if (valueCache != null) {
+        var slot = new ValueCache.Slot(environment, tClass);
+        Optional<T> cached = valueCache.getIfPresent(key, slot);
+        if (cached != null) {
+          return cached;
+        }
+        var keyPath = ZnodePath.from(key);
+        var valuePath = valuePath(keyPath, environment);
+        return valueCache.load(
+            key,
+            slot,
+            List.of(keyPath, CONFIG.withParent(keyPath), valuePath),
+            watcher ->
+                operateWithReadMode(key, () -> readValue(keyPath, valuePath, tClass, watcher)));
+      }
+      var keyPath = ZnodePath.from(key);
+      return operateWithReadMode(
+          key, () -> readValue(keyPath, valuePath(keyPath, environment), tClass, null));
+    } catch (Exception e) {
+      throw new RuntimeException("Unable to get value for key " + key.key(), e);
+    }
+  }
+
+  /**
+   * The CONFIG node and the value nodes of the whole chain are fetched by a single multi read, the
+   * resolved value is cached for the chain as a whole.
+   */
+  @Override
+  public <T> Optional<T> getValueWithFallback(
+      ConfigurationKey key, List<Environment> environments, Class<T> tClass) {
+    requireNonNull(key, "key must be defined");
+    requireNonNull(environments, "environments must be defined");
+    requireNonNull(tClass, "tClass must be defined");
+    requireOpen();
+    var slot = new ValueCache.Slot(List.copyOf(environments), tClass);
+    if (valueCache != null) {
+      Optional<T> cached = valueCache.getIfPresent(key, slot);
+      if (cached != null) {
+        return cached;
+      }
+    }
     var keyPath = ZnodePath.from(key);
+    var paths = new ArrayList<ZnodePath>(slot.environments().size() + 2);
+    paths.add(CONFIG.withParent(keyPath));
+    slot.environments().forEach(environment -> paths.add(valuePath(keyPath, environment)));
+    paths.add(valuePath(keyPath, null));
+    var pendingLoad = valueCache == null ? null : valueCache.startLoad(key, slot, paths);
     try {
-      return lockTemplate.operateWithLockOnConfiguration(
-          key,
-          () -> {
-            var stat = zookeeperClient.exist(keyPath);
-            if (stat == null) {
-              return Optional.empty();
-            }
-            var configuration =
-                dataMarshaller.configurationFromByteArray(
-                    zookeeperClient.getContent(CONFIG.withParent(keyPath)), tClass);
-            ZnodePath valuePath =
-                environment == null
-                    ? VALUE.withParent(keyPath)
-                    : ZnodePath.from(environment).withParent(keyPath);
-            var valueContent = zookeeperClient.getContent(valuePath);
-            var configurationEntry =
-                dataMarshaller.configurationEntryFromByteArray(valueContent, tClass);
-            if (configurationEntry.value() == null) {
-              return Optional.ofNullable(configuration.defaultVariant().value());
-            }
-            return Optional.ofNullable(configurationEntry.value());
-          });
+      var contents = readContents(paths);
+      var entries = new ArrayList<ConfigurationEntry<T>>(paths.size() - 1);
+      for (var index = 1; index < paths.size(); index++) {
+        entries.add(parseEntry(paths.get(index), contents.get(index), tClass));
+      }
+      var configuration = parseConfiguration(paths.getFirst(), contents.getFirst(), tClass);
+      var value = resolveFirstValue(configuration, entries);
+      if (pendingLoad != null) {
+        pendingLoad.publish(value);
+      }
+      return value;
     } catch (Exception e) {
       throw new RuntimeException("Unable to get value for key " + key.key(), e);
     }
   }
 
+  private <T> T operateWithReadMode(ConfigurationKey key, Callable<T> read) throws Exception {
+    if (readMode == ValueProviderOptions.ReadMode.LOCK_FREE) {
+      return read.call();
+    }
+    return lockTemplate.operateWithLockOnConfiguration(key, read);
+  }
+
+  @Override
+  public <T> CompletableFuture<Optional<T>> getValueAsync(ConfigurationKey key, Class<T> tClass) {
+    return getValueAsync(key, null, tClass);
+  }
+
+  /**
+   * Reads are pipelined on the Zookeeper session without blocking any thread, the returned future
+   * is completed by the Zookeeper event thread. Heavy work chained to it should use an async stage.
+   */
+  @Override
+  public <T> CompletableFuture<Optional<T>> getValueAsync(
+      ConfigurationKey key, Environment environment, Class<T> tClass) {
+    requireNonNull(key, "key must be defined");
+    requireNonNull(tClass, "tClass must be defined");
+    requireOpen();
+    if (valueCache != null) {
+      var slot = new ValueCache.Slot(environment, tClass);
+      Optional<T> cached = valueCache.getIfPresent(key, slot);
+      if (cached != null) {
+        return CompletableFuture.completedFuture(cached);
+      }
+      var keyPath = ZnodePath.from(key);
+      var valuePath = valuePath(keyPath, environment);
+      return valueCache.loadAsync(
+          key,
+          slot,
+          List.of(keyPath, CONFIG.withParent(keyPath), valuePath),
+          watcher -> readValueAsync(keyPath, valuePath, tClass, watcher));
+    }
+    var keyPath = ZnodePath.from(key);
+    return readValueAsync(keyPath, valuePath(keyPath, environment), tClass, null);
+  }
+
+  /**
+   * The CONFIG and value nodes of every key not already cached are fetched by multi reads of at
+   * most {@value #READ_BATCH_SIZE} nodes, a single one for up to half as many keys.
+   */
+  @Override
+  public <T> Map<ConfigurationKey, Optional<T>> getValues(
+      Collection<ConfigurationKey> keys, Environment environment, Class<T> tClass) {
+    requireNonNull(keys, "keys must be defined");
+    requireNonNull(tClass, "tClass must be defined");
+    requireOpen();
+    var values = new HashMap<ConfigurationKey, Optional<T>>();
+    var keysToRead = new LinkedHashSet<ConfigurationKey>();
+    var slot = new ValueCache.Slot(environment, tClass);
+    for (var key : keys) {
+      requireNonNull(key, "key must be defined");
+      Optional<T> cached = valueCache == null ? null : valueCache.getIfPresent(key, slot);
+      if (cached != null) {
+        values.put(key, cached);
+      } else {
+        keysToRead.add(key);
+      }
+    }
+    if (keysToRead.isEmpty()) {
+      return values;
+    }
+    var paths = new ArrayList<ZnodePath>(keysToRead.size() * 2);
+    var pendingLoads = new ArrayList<ValueCache.PendingLoad>(keysToRead.size());
+    for (var key : keysToRead) {
+      var keyPath = ZnodePath.from(key);
+      var keyPaths = List.of(CONFIG.withParent(keyPath), valuePath(keyPath, environment));
+      paths.addAll(keyPaths);
+      if (valueCache != null) {
+        pendingLoads.add(valueCache.startLoad(key, slot, keyPaths));
+      }
+    }
+    var contents = readContents(paths);
+    var index = 0;
+    for (var key : keysToRead) {
+      Optional<T> value =
+          resolveValue(
+              parseConfiguration(paths.get(index * 2), contents.get(index * 2), tClass),
+              parseEntry(paths.get(index * 2 + 1), contents.get(index * 2 + 1), tClass));
+      values.put(key, value);
+      if (valueCache != null) {
+        pendingLoads.get(index).publish(value);
+      }
+      index++;
+    }
+    return values;
+  }
+
+  /**
+   * With a local node store, nodes are read through it and the store notifies the value cache of
+   * changes itself, so the given watcher is not armed.
+   */
+  private <T> Optional<T> readValue(
+      ZnodePath keyPath, ZnodePath valuePath, Class<T> tClass, Watcher watcher) {
+    if (nodeStore == null) {
+      return readValueFromZookeeper(keyPath, valuePath, tClass, watcher);
+    }
+    if (nodeStore.read(keyPath).stat() == null) {
+      return Optional.empty();
+    }
+    var configPath = CONFIG.withParent(keyPath);
+    return resolveValue(
+        parseConfiguration(configPath, nodeStore.read(configPath), tClass),
+        parseEntry(valuePath, nodeStore.read(valuePath), tClass));
+  }
+
+  /** Read nodes by multi reads of at most {@value #READ_BATCH_SIZE} nodes. */
+  private List<ZookeeperClient.NodeContent> readContents(List<ZnodePath> paths) {
+    if (paths.size() <= READ_BATCH_SIZE) {
+      return readBatch(paths);
+    }
+    var contents = new ArrayList<ZookeeperClient.NodeContent>(paths.size());
+    for (var from = 0; from < paths.size(); from += READ_BATCH_SIZE) {
+      var to = Math.min(from + READ_BATCH_SIZE, paths.size());
+      contents.addAll(readBatch(paths.subList(from, to)));
+    }
+    return contents;
+  }
+
+  private List<ZookeeperClient.NodeContent> readBatch(List<ZnodePath> paths) {
+    if (nodeStore != null) {
+      return nodeStore.readAll(paths);
+    }
+    var watchesArmed =
+        valueCache == null
+            ? CompletableFuture.completedFuture(null)
+            : zookeeperClient.watchAll(paths, valueCache);
+    var contents = zookeeperClient.getNodeContents(paths);
+    watchesArmed.join();
+    return contents;
+  }
+
+  /**
+   * With direct requests, the CONFIG node tells whether the key exists, so only the CONFIG and
+   * value nodes are read, each by a single getData request.
+   */
+  private <T> Optional<T> readValueFromZookeeper(
+      ZnodePath keyPath, ZnodePath valuePath, Class<T> tClass, Watcher watcher) {
+    var configPath = CONFIG.withParent(keyPath);
+    if (zookeeperClient.directRequests) {
+      var configContent = zookeeperClient.getNodeContent(configPath, watcher);
+      var valueContent = zookeeperClient.getNodeContent(valuePath, watcher);
+      return resolveValue(
+          parseConfiguration(configPath, configContent, tClass),
+          parseEntry(valuePath, valueContent, tClass));
+    }
+    var stat = zookeeperClient.exist(keyPath, watcher);
+    if (stat == null) {
+      return Optional.empty();
+    }
+    return resolveValue(
+        readParsed(configPath, watcher, tClass, dataMarshaller::configurationFromByteArray),
+        readParsed(valuePath, watcher, tClass, dataMarshaller::configurationEntryFromByteArray));
+  }
+
+  /**
+   * Only nodes changed since they were last decoded are read, the Stat provided by the exists
+   * request which arms the watch is enough to know that.
+   */
+  private <T, R> R readParsed(
+      ZnodePath path, Watcher watcher, Class<T> tClass, BiFunction<byte[], Class<T>, R> parser) {
+    var stat = zookeeperClient.exist(path, watcher);
+    if (stat == null) {
+      parseCache.evict(path);
+      return null;
+    }
+    R parsed = parseCache.getIfPresent(path, tClass, stat.getMzxid());
+    if (parsed != null) {
+      return parsed;
+    }
+    return parseCache.parse(path, zookeeperClient.getNodeContent(path), tClass, parser);
+  }
+
+  private <T> Configuration<T> parseConfiguration(
+      ZnodePath path, ZookeeperClient.NodeContent content, Class<T> tClass) {
+    return parseCache.parse(path, content, tClass, dataMarshaller::configurationFromByteArray);
+  }
+
+  private <T> ConfigurationEntry<T> parseEntry(
+      ZnodePath path, ZookeeperClient.NodeContent content, Class<T> tClass) {
+    return parseCache.parse(path, content, tClass, dataMarshaller::configurationEntryFromByteArray);
+  }
+
+  /** Nodes are read from the local node store only if every one of them is current there. */
+  private <T> CompletableFuture<Optional<T>> readValueAsync(
+      ZnodePath keyPath, ZnodePath valuePath, Class<T> tClass, Watcher watcher) {
+    var configPath = CONFIG.withParent(keyPath);
+    if (nodeStore != null) {
+      var keyContent = nodeStore.getIfPresent(keyPath);
+      var configContent = nodeStore.getIfPresent(configPath);
+      var valueContent = nodeStore.getIfPresent(valuePath);
+      if (keyContent != null && configContent != null && valueContent != null) {
+        return CompletableFuture.completedFuture(
+            keyContent.stat() == null
+                ? Optional.empty()
+                : resolveValue(
+                    parseConfiguration(configPath, configContent, tClass),
+                    parseEntry(valuePath, valueContent, tClass)));
+      }
+    }
+    var keyStat = zookeeperClient.existAsync(keyPath, watcher);
+    var configContent = zookeeperClient.getNodeContentAsync(configPath, watcher);
+    var valueContent = zookeeperClient.getNodeContentAsync(valuePath, watcher);
+    return CompletableFuture.allOf(keyStat, configContent, valueContent)
+        .thenApply(
+            ignored -> {
+              if (keyStat.join() == null) {
+                return Optional.empty();
+              }
+              return resolveValue(
+                  parseConfiguration(configPath, configContent.join(), tClass),
+                  parseEntry(valuePath, valueContent.join(), tClass));
+            });
+  }
+
+  private static <T> Optional<T> resolveValue(
+      Configuration<T> configuration, ConfigurationEntry<T> configurationEntry) {
+    return resolveFirstValue(configuration, Collections.singletonList(configurationEntry));
+  }
+
+  /** Provide the first value defined by an entry, or the default variant of the configuration. */
+  private static <T> Optional<T> resolveFirstValue(
+      Configuration<T> configuration, List<ConfigurationEntry<T>> configurationEntries) {
+    if (configuration == null) {
+      return Optional.empty();
+    }
+    for (var configurationEntry : configurationEntries) {
+      if (configurationEntry != null && configurationEntry.value() != null) {
+        return Optional.of(configurationEntry.value());
+      }
+    }
+    return Optional.ofNullable(configuration.defaultVariant().value());
+  }
+
+  private static ZnodePath valuePath(ZnodePath keyPath, Environment environment) {
+    return environment == null
+        ? VALUE.withParent(keyPath)
+        : ZnodePath.from(environment).withParent(keyPath);
+  }
+
+  /**
+   * Configurations are discovered with a pipelined scan of the tree under the prefix, then their
+   * nodes are loaded into the local node store by multi reads of about {@value
+   * #PREFETCH_BATCH_SIZE} nodes, each one preceded by the pipelined requests arming their watches.
+   *
+   * @throws IllegalStateException if nodes are not stored locally, see {@link
+   *     ValueProviderOptions#storeNodesLocally()}
+   */
+  @Override
+  public int prefetch(ConfigurationKey prefix, Set<Environment> environments) {
+    requireNonNull(environments, "environments must be defined");
+    var loaded = prefetch(scanConfigurations(prefix).iterator(), environments);
+    LOGGER.debug("Prefetched {} configurations under {}", loaded, prefix.key());
+    return loaded;
+  }
+
+  /**
+   * Discover the configurations under a prefix with a pipelined scan of the tree.
+   *
+   * @return Paths of the discovered configuration keys, provided lazily as the scan goes
+   */
+  Stream<ZnodePath> scanConfigurations(ConfigurationKey prefix) {
+    requireNonNull(prefix, "prefix must be defined");
+    requireNodeStore();
+    return zookeeperClient
+        .scan(ZnodePath.from(prefix), CONFIG_NODE_NAME::equals, false, PREFETCH_MAX_IN_FLIGHT)
+        .map(node -> zookeeperClient.relativize(node.path()).parent());
+  }
+
+  /**
+   * Load the nodes of already discovered configurations into the local node store.
+   *
+   * @param keyPaths Paths of the configuration keys to load
+   * @return Number of configurations loaded
+   */
+  int prefetch(Iterator<ZnodePath> keyPaths, Set<Environment> environments) {
+    requireNonNull(keyPaths, "keyPaths must be defined");
+    requireNonNull(environments, "environments must be defined");
+    requireNodeStore();
+    var nodesPerKey = 3 + environments.size();
+    var loaded = 0;
+    var batch = new ArrayList<ZnodePath>(PREFETCH_BATCH_SIZE);
+    while (keyPaths.hasNext()) {
+      batch.add(keyPaths.next());
+      if (batch.size() * nodesPerKey >= PREFETCH_BATCH_SIZE || !keyPaths.hasNext()) {
+        loaded += prefetchBatch(batch, environments);
+        batch.clear();
+      }
+    }
+    return loaded;
+  }
+
+  private void requireNodeStore() {
+    requireOpen();
+    if (nodeStore == null) {
+      throw new IllegalStateException("Prefetch requires nodes to be stored locally");
+    }
+  }
+
+  private int prefetchBatch(List<ZnodePath> keyPaths, Set<Environment> environments) {
+    var paths = new ArrayList<ZnodePath>();
+    for (var keyPath : keyPaths) {
+      paths.add(CONFIG.withParent(keyPath));
+      paths.add(keyPath);
+      paths.add(valuePath(keyPath, null));
+      environments.forEach(environment -> paths.add(valuePath(keyPath, environment)));
+    }
+    var contents = nodeStore.readAll(paths);
+    var loaded = 0;
+    var nodesPerKey = 3 + environments.size();
+    for (var index = 0; index < contents.size(); index += nodesPerKey) {
+      if (contents.get(index).stat() != null) {
+        loaded++;
+      }
+    }
+    return loaded;
+  }
+
+  @Override
+  public <T> ConfigurationHandle<T> handle(ConfigurationKey key, Class<T> tClass) {
+    return handle(key, null, tClass);
+  }
+
+  /**
+   * The handle is resolved again, bypassing the value cache and the local node store, each time the
+   * CONFIG or value node it depends on changes.
+   */
+  @Override
+  public <T> ConfigurationHandle<T> handle(
+      ConfigurationKey key, Environment environment, Class<T> tClass) {
+    requireNonNull(key, "key must be defined");
+    requireNonNull(tClass, "tClass must be defined");
+    requireOpen();
+    var keyPath = ZnodePath.from(key);
+    var valuePath = valuePath(keyPath, environment);
+    var handle =
+        new ZookeeperConfigurationHandle<>(
+            key,
+            environment,
+            () -> readValueFromZookeeper(keyPath, valuePath, tClass, null),
+            notificationDispatcher);
+    handle.start(eventRouter, List.of(CONFIG.withParent(keyPath), valuePath));
+    return handle;
+  }
+
+  /** Provide statistics about notifications dispatched to subscribed listeners. */
+  public NotificationStatistics notificationStatistics() {
+    return notificationDispatcher.statistics();
+  }
+
   @Override
   public <T> void subscribeToValueChange(
       ConfigurationKey key, ValueChangeListener listener, Class<T> tClass) {
@@ -91,14 +675,65 @@ public class ZookeeperConfigurationValueProvider implements ConfigurationValuePr
       Class<T> tClass) {
     requireNonNull(listener, "listener must be defined");
     requireNonNull(tClass, "tClass must be defined");
-    var path = ZnodePath.from(key);
-    ZnodePath valuePath =
-        environment == null ? VALUE.withParent(path) : ZnodePath.from(environment).withParent(path);
-    new PreviousValueWatcher(
-        zookeeperClient,
-        valuePath,
-        (path1, previous, newData) ->
-            convertDataToConfigurationEntryAndNotify(key, listener, tClass, previous, newData));
+    requireOpen();
+    var valuePath = valuePath(ZnodePath.from(key), environment);
+    new PreviousValueSubscription(
+            zookeeperClient,
+            notificationDispatcher,
+            valuePath,
+            (path1, previous, newData) ->
+                convertDataToConfigurationEntryAndNotify(key, listener, tClass, previous, newData))
+        .start(eventRouter);
+  }
+
+  /**
+   * Every change under the prefix is received from the single recursive watch already armed on the
+   * root node, the current values are loaded by one pipelined scan of the subtree.
+   */
+  @Override
+  public <T> void subscribeToPrefix(
+      ConfigurationKey prefix, ValueChangeListener listener, Class<T> tClass) {
+    requireNonNull(prefix, "prefix must be defined");
+    requireNonNull(listener, "listener must be defined");
+    requireNonNull(tClass, "tClass must be defined");
+    requireOpen();
+    new PrefixSubscription(
+            zookeeperClient,
+            notificationDispatcher,
+            ZnodePath.from(prefix),
+            (keyPath, nodeName, previous, current) ->
+                convertPrefixDataAndNotify(keyPath, nodeName, listener, tClass, previous, current))
+        .start(eventRouter);
+  }
+
+  private <T> void convertPrefixDataAndNotify(
+      ZnodePath keyPath,
+      String nodeName,
+      ValueChangeListener listener,
+      Class<T> tClass,
+      byte[] previous,
+      byte[] current) {
+    Environment environment = null;
+    if (!VALUE_NODE_NAME.equals(nodeName)) {
+      try {
+        environment = new Environment(nodeName);
+      } catch (IllegalArgumentException e) {
+        // Not an environment name, a nested configuration key.
+        return;
+      }
+    }
+    ConfigurationEntry<T> previousEntry = null;
+    if (previous != null && previous.length > 0) {
+      previousEntry = dataMarshaller.configurationEntryFromByteArray(previous, tClass);
+    }
+    ConfigurationEntry<T> currentEntry = null;
+    if (current != null && current.length > 0) {
+      currentEntry = dataMarshaller.configurationEntryFromByteArray(current, tClass);
+    }
+    if (previousEntry == null && currentEntry == null) {
+      return;
+    }
+    listener.valueChange(keyPath.toConfigurationKey(), environment, previousEntry, currentEntry);
   }
 
   private <T> void convertDataToConfigurationEntryAndNotify(
@@ -122,65 +757,74 @@ public class ZookeeperConfigurationValueProvider implements ConfigurationValuePr
     void change(ZnodePath path, byte[] previous, byte[] newData);
   }
 
-  private static class PreviousValueWatcher implements Watcher {
+  private static class PreviousValueSubscription implements ZnodeEventRouter.NodeListener {
 
     private final ZookeeperClient zookeeperClient;
 
+    private final NotificationDispatcher notificationDispatcher;
+
     private final ZnodePath path;
 
     private final DataObserver dataObserver;
 
-    private final byte[] previous;
+    private final CompletableFuture<Void> initialized;
 
-    private PreviousValueWatcher(
-        ZookeeperClient zookeeperClient, ZnodePath path, DataObserver dataObserver) {
-      this.zookeeperClient = zookeeperClient;
-      this.path = path;
-      this.dataObserver = dataObserver;
-      var stat = zookeeperClient.watchChangeOn(path, this);
-      if (stat != null) {
-        previous = zookeeperClient.getContent(path);
-        LOGGER.debug("Subscribe to an existing data on node {}", path.path());
-      } else {
-        previous = new byte[0];
-        LOGGER.debug("Subscribe to an empty a on node {}", path.path());
-      }
-    }
+    // Only accessed by the dispatcher, which runs the tasks of this subscription one at a time.
+    private byte[] previous;
 
-    private PreviousValueWatcher(
+    private PreviousValueSubscription(
         ZookeeperClient zookeeperClient,
+        NotificationDispatcher notificationDispatcher,
         ZnodePath path,
-        DataObserver dataObserver,
-        byte[] previous) {
+        DataObserver dataObserver) {
       this.zookeeperClient = zookeeperClient;
+      this.notificationDispatcher = notificationDispatcher;
       this.path = path;
       this.dataObserver = dataObserver;
-      this.previous = previous;
-      if (previous != null && previous.length > 0) {
-        LOGGER.debug("Subscribe to an existing data on node {}", path.path());
-      } else {
-        LOGGER.debug("Subscribe to an empty a on node {}", path.path());
+      this.initialized = new CompletableFuture<>();
+    }
+
+    private void start(ZnodeEventRouter eventRouter) {
+      eventRouter.register(path, this);
+      try {
+        notificationDispatcher.dispatchAndWait(this, this::refresh, initialized);
+      } catch (CompletionException e) {
+        eventRouter.unregister(path, this);
+        throw new ZookeeperClient.ZooKeeperClientException(
+            "Unable to subscribe to node " + path.path(), e.getCause());
       }
-      zookeeperClient.watchChangeOn(path, this);
     }
 
     @Override
-    public void process(WatchedEvent event) {
-      LOGGER.debug("Received event {} for listener instance {}", event, this.hashCode());
-      if (event.getType() == Event.EventType.NodeDataChanged) {
-        var current = zookeeperClient.getContent(path);
-        try {
-          dataObserver.change(path, previous, current);
-        } catch (Exception e) {
-          LOGGER.error("Unable to dispatch event {} to the data observer", event.getType(), e);
-        }
-        zookeeperClient.watchChangeOn(
-            path, new PreviousValueWatcher(zookeeperClient, path, dataObserver, current));
-      } else {
-        if (event.getState() == Event.KeeperState.SyncConnected) {
-          zookeeperClient.watchChangeOn(
-              path, new PreviousValueWatcher(zookeeperClient, path, dataObserver));
+    public void nodeChanged() {
+      notificationDispatcher.dispatch(this, this::refresh);
+    }
+
+    private void refresh() {
+      if (initialized.isCompletedExceptionally()) {
+        return;
+      }
+      byte[] current;
+      try {
+        current = zookeeperClient.getContent(path);
+      } catch (RuntimeException e) {
+        initialized.completeExceptionally(e);
+        throw e;
+      }
+      if (!initialized.isDone()) {
+        previous = current;
+        initialized.complete(null);
+        if (current.length > 0) {
+          LOGGER.debug("Subscribe to an existing data on node {}", path.path());
+        } else {
+          LOGGER.debug("Subscribe to an empty a on node {}", path.path());
         }
+        return;
+      }
+      var last = previous;
+      previous = current;
+      if (!Arrays.equals(last, current)) {
+        dataObserver.change(path, last, current);
       }
     }
   }
@@ -3,20 +3,28 @@ package com.github.jpthiery.arthena.zookeeper.json;
 import static java.util.Objects.requireNonNull;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import java.util.Arrays;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.function.Function;
 
 public class DefaultJsonNodeToValueConverterProvider implements JsonNodeToValueConverterProvider {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
   @Override
   public <T> Function<JsonNode, T> provide(Class<T> tClass) {
     requireNonNull(tClass, "tClass must be defined");
     if (tClass.isEnum()) {
+      var constants = enumConstantsByName(tClass);
       return jsonNode -> {
         var value = jsonNode.asText();
-        return Arrays.stream(tClass.getEnumConstants())
-            .filter(item -> item.toString().equals(value))
-            .toList()
-            .getFirst();
+        var constant = constants.get(value);
+        if (constant == null) {
+          throw new NoSuchElementException("No constant " + value + " in " + tClass.getName());
+        }
+        return constant;
       };
     } else if (Boolean.class.isAssignableFrom(tClass)) {
       return jsonNode -> (T) Boolean.valueOf(jsonNode.asBoolean());
@@ -28,7 +36,19 @@ public class DefaultJsonNodeToValueConverterProvider implements JsonNodeToValueC
       return jsonNode -> (T) Double.valueOf(jsonNode.asDouble());
     } else if (String.class.isAssignableFrom(tClass)) {
       return jsonNode -> (T) jsonNode.asText();
+    } else if (Object.class.equals(tClass)) {
+      // Values of unknown type are provided with their natural Json type
+      return jsonNode -> (T) OBJECT_MAPPER.convertValue(jsonNode, Object.class);
     }
     return null;
   }
+
+  /** Constants are matched on their <code>toString()</code>, the first one declared wins. */
+  private static <T> Map<String, T> enumConstantsByName(Class<T> tClass) {
+    var constants = new HashMap<String, T>();
+    for (var constant : tClass.getEnumConstants()) {
+      constants.putIfAbsent(constant.toString(), constant);
+    }
+    return Map.copyOf(constants);
+  }
 }
@@ -0,0 +1,69 @@
+package com.github.jpthiery.arthena.zookeeper.json;
+
+import static java.util.Objects.requireNonNull;
+
+import com.fasterxml.jackson.dataformat.smile.SmileConstants;
+import com.github.jpthiery.arthena.domain.Configuration;
+import com.github.jpthiery.arthena.domain.ConfigurationEntry;
+import com.github.jpthiery.arthena.zookeeper.DataMarshaller;
+
+/**
+ * {@link DataMarshaller} which reads both Json and Smile payloads, told apart by the Smile header,
+ * and writes in a chosen {@link Format}. It allows to migrate a tree from one format to the other
+ * while nodes of both formats coexist.
+ */
+public class FormatDetectingDataMarshaller implements DataMarshaller {
+
+  public enum Format {
+    JSON,
+    SMILE
+  }
+
+  private final DataMarshaller jsonDataMarshaller;
+
+  private final DataMarshaller smileDataMarshaller;
+
+  private final DataMarshaller writer;
+
+  public FormatDetectingDataMarshaller(
+      JsonNodeToValueConverterProvider jsonNodeToValueConverterProvider, Format writeFormat) {
+    requireNonNull(writeFormat, "writeFormat must be defined");
+    this.jsonDataMarshaller = new StreamingJsonDataMarshaller(jsonNodeToValueConverterProvider);
+    this.smileDataMarshaller = new SmileDataMarshaller(jsonNodeToValueConverterProvider);
+    this.writer = writeFormat == Format.SMILE ? smileDataMarshaller : jsonDataMarshaller;
+  }
+
+  public FormatDetectingDataMarshaller(Format writeFormat) {
+    this(null, writeFormat);
+  }
+
+  @Override
+  public <T> Configuration<T> configurationFromByteArray(byte[] data, Class<T> tClass) {
+    return reader(data).configurationFromByteArray(data, tClass);
+  }
+
+  @Override
+  public <T> ConfigurationEntry<T> configurationEntryFromByteArray(byte[] data, Class<T> tClass) {
+    return reader(data).configurationEntryFromByteArray(data, tClass);
+  }
+
+  @Override
+  public <T> byte[] toByteArray(Configuration<T> configuration) {
+    return writer.toByteArray(configuration);
+  }
+
+  @Override
+  public <T> byte[] toByteArray(ConfigurationEntry<T> configurationEntry) {
+    return writer.toByteArray(configurationEntry);
+  }
+
+  private DataMarshaller reader(byte[] data) {
+    var smile =
+        data != null
+            && data.length >= 4
+            && data[0] == SmileConstants.HEADER_BYTE_1
+            && data[1] == SmileConstants.HEADER_BYTE_2
+            && data[2] == SmileConstants.HEADER_BYTE_3;
+    return smile ? smileDataMarshaller : jsonDataMarshaller;
+  }
+}
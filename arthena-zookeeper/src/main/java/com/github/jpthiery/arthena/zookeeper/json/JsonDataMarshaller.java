@@ -13,18 +13,20 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Objects;
+import java.util.function.Function;
 
 public class JsonDataMarshaller implements DataMarshaller {
 
   private final ObjectMapper objectMapper;
 
-  private final JsonNodeToValueConverterProvider jsonNodeToValueConverterProvider;
+  private final ValueConverters valueConverters;
 
   public JsonDataMarshaller(JsonNodeToValueConverterProvider jsonNodeToValueConverterProvider) {
     this.objectMapper = new ObjectMapper();
-    this.jsonNodeToValueConverterProvider =
-        Objects.requireNonNullElseGet(
-            jsonNodeToValueConverterProvider, DefaultJsonNodeToValueConverterProvider::new);
+    this.valueConverters =
+        new ValueConverters(
+            Objects.requireNonNullElseGet(
+                jsonNodeToValueConverterProvider, DefaultJsonNodeToValueConverterProvider::new));
   }
 
   public JsonDataMarshaller() {
@@ -36,7 +38,6 @@ public class JsonDataMarshaller implements DataMarshaller {
     if (data == null || data.length == 0) {
       return null;
     }
-    var objectMapper = new ObjectMapper();
     try {
       var json = objectMapper.readTree(data);
       var keyStr = json.get("key").get("key").asText();
@@ -45,11 +46,13 @@ public class JsonDataMarshaller implements DataMarshaller {
       json.get("metadata")
           .fields()
           .forEachRemaining(field -> metadata.put(field.getKey(), field.getValue().asText()));
-      var defaultVariant = jsonToConfigurationEntry(json.get("defaultVariant"), tClass);
+      var valueConverter = valueConverters.of(tClass);
+      var defaultVariant = jsonToConfigurationEntry(json.get("defaultVariant"), valueConverter);
       var variants = new ArrayList<ConfigurationEntry<T>>();
       json.get("variants")
           .iterator()
-          .forEachRemaining(variant -> variants.add(jsonToConfigurationEntry(variant, tClass)));
+          .forEachRemaining(
+              variant -> variants.add(jsonToConfigurationEntry(variant, valueConverter)));
       return new Configuration<>(
           new ConfigurationKey(keyStr), name, metadata, variants, defaultVariant);
     } catch (IOException e) {
@@ -59,9 +62,12 @@ public class JsonDataMarshaller implements DataMarshaller {
 
   @Override
   public <T> ConfigurationEntry<T> configurationEntryFromByteArray(byte[] data, Class<T> tClass) {
+    if (data == null || data.length == 0) {
+      return null;
+    }
     try {
       var jsonNode = objectMapper.readTree(data);
-      return jsonToConfigurationEntry(jsonNode, tClass);
+      return jsonToConfigurationEntry(jsonNode, valueConverters.of(tClass));
     } catch (IOException e) {
       throw new RuntimeException("Unable to read data", e);
     }
@@ -90,10 +96,10 @@ public class JsonDataMarshaller implements DataMarshaller {
     }
   }
 
-  private <T> ConfigurationEntry<T> jsonToConfigurationEntry(JsonNode jsonNode, Class<T> tClass) {
+  private <T> ConfigurationEntry<T> jsonToConfigurationEntry(
+      JsonNode jsonNode, Function<JsonNode, T> valueConverter) {
     var name = jsonNode.get("name").asText();
     var description = jsonNode.get("description").asText();
-    var valueConverter = jsonNodeToValueConverterProvider.provide(tClass);
     var value = valueConverter.apply(jsonNode.get("value"));
     return new ConfigurationEntry<>(name, value, description);
   }
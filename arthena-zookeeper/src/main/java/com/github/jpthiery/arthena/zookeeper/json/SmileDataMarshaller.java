@@ -0,0 +1,56 @@
+package com.github.jpthiery.arthena.zookeeper.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileParser;
+import com.github.jpthiery.arthena.domain.Configuration;
+import com.github.jpthiery.arthena.domain.ConfigurationEntry;
+import com.github.jpthiery.arthena.zookeeper.DataMarshaller;
+
+/**
+ * Binary {@link DataMarshaller} using <a
+ * href="https://github.com/FasterXML/smile-format-specification">Smile</a>, the binary form of the
+ * Json layout written by {@link JsonDataMarshaller}. Each payload starts with the Smile header,
+ * <code>:)\n</code> followed by a version byte, which {@link FormatDetectingDataMarshaller} relies
+ * on to tell it apart from Json.
+ */
+public class SmileDataMarshaller implements DataMarshaller {
+
+  private final StreamingJsonDataMarshaller delegate;
+
+  public SmileDataMarshaller(JsonNodeToValueConverterProvider jsonNodeToValueConverterProvider) {
+    var smileFactory =
+        SmileFactory.builder()
+            .enable(SmileGenerator.Feature.WRITE_HEADER)
+            .enable(SmileParser.Feature.REQUIRE_HEADER)
+            .build();
+    this.delegate =
+        new StreamingJsonDataMarshaller(
+            jsonNodeToValueConverterProvider, new ObjectMapper(smileFactory));
+  }
+
+  public SmileDataMarshaller() {
+    this(null);
+  }
+
+  @Override
+  public <T> Configuration<T> configurationFromByteArray(byte[] data, Class<T> tClass) {
+    return delegate.configurationFromByteArray(data, tClass);
+  }
+
+  @Override
+  public <T> ConfigurationEntry<T> configurationEntryFromByteArray(byte[] data, Class<T> tClass) {
+    return delegate.configurationEntryFromByteArray(data, tClass);
+  }
+
+  @Override
+  public <T> byte[] toByteArray(Configuration<T> configuration) {
+    return delegate.toByteArray(configuration);
+  }
+
+  @Override
+  public <T> byte[] toByteArray(ConfigurationEntry<T> configurationEntry) {
+    return delegate.toByteArray(configurationEntry);
+  }
+}
@@ -0,0 +1,226 @@
+package com.github.jpthiery.arthena.zookeeper.json;
+
+import static java.util.Objects.requireNonNull;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jpthiery.arthena.domain.Configuration;
+import com.github.jpthiery.arthena.domain.ConfigurationEntry;
+import com.github.jpthiery.arthena.domain.ConfigurationKey;
+import com.github.jpthiery.arthena.zookeeper.DataMarshaller;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Json {@link DataMarshaller} which binds tokens straight into {@link Configuration} and {@link
+ * ConfigurationEntry}, without building an intermediate tree, and writes compact Json. It reads
+ * data written by {@link JsonDataMarshaller}, and the other way around.
+ */
+public class StreamingJsonDataMarshaller implements DataMarshaller {
+
+  private final ObjectMapper objectMapper;
+
+  private final JsonFactory jsonFactory;
+
+  private final ValueConverters valueConverters;
+
+  public StreamingJsonDataMarshaller(
+      JsonNodeToValueConverterProvider jsonNodeToValueConverterProvider) {
+    this(jsonNodeToValueConverterProvider, new ObjectMapper());
+  }
+
+  public StreamingJsonDataMarshaller() {
+    this(null);
+  }
+
+  /** Bind tokens of the format handled by the factory of the given {@link ObjectMapper}. */
+  StreamingJsonDataMarshaller(
+      JsonNodeToValueConverterProvider jsonNodeToValueConverterProvider,
+      ObjectMapper objectMapper) {
+    requireNonNull(objectMapper, "objectMapper must be defined");
+    this.objectMapper = objectMapper;
+    this.jsonFactory = objectMapper.getFactory();
+    this.valueConverters =
+        new ValueConverters(
+            Objects.requireNonNullElseGet(
+                jsonNodeToValueConverterProvider, DefaultJsonNodeToValueConverterProvider::new));
+  }
+
+  @Override
+  public <T> Configuration<T> configurationFromByteArray(byte[] data, Class<T> tClass) {
+    if (data == null || data.length == 0) {
+      return null;
+    }
+    var valueConverter = valueConverters.of(tClass);
+    try (var parser = jsonFactory.createParser(data)) {
+      expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+      String key = null;
+      String name = null;
+      var metadata = new HashMap<String, String>();
+      var variants = new ArrayList<ConfigurationEntry<T>>();
+      ConfigurationEntry<T> defaultVariant = null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        var field = parser.currentName();
+        parser.nextToken();
+        switch (field) {
+          case "key" -> key = readKey(parser);
+          case "name" -> name = parser.getValueAsString();
+          case "metadata" -> readMetadata(parser, metadata);
+          case "variants" -> readVariants(parser, valueConverter, variants);
+          case "defaultVariant" -> defaultVariant = readEntry(parser, valueConverter);
+          default -> parser.skipChildren();
+        }
+      }
+      return new Configuration<>(
+          new ConfigurationKey(key), name, metadata, variants, defaultVariant);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to deserialize as Json configuration", e);
+    }
+  }
+
+  @Override
+  public <T> ConfigurationEntry<T> configurationEntryFromByteArray(byte[] data, Class<T> tClass) {
+    if (data == null || data.length == 0) {
+      return null;
+    }
+    var valueConverter = valueConverters.of(tClass);
+    try (var parser = jsonFactory.createParser(data)) {
+      parser.nextToken();
+      return readEntry(parser, valueConverter);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to read data", e);
+    }
+  }
+
+  @Override
+  public <T> byte[] toByteArray(Configuration<T> configuration) {
+    requireNonNull(configuration, "configuration must be defined");
+    return write(
+        generator -> {
+          generator.writeStartObject();
+          generator.writeObjectFieldStart("key");
+          generator.writeStringField("key", configuration.key().key());
+          generator.writeEndObject();
+          generator.writeStringField("name", configuration.name());
+          generator.writeObjectFieldStart("metadata");
+          for (var metadata : configuration.metadata().entrySet()) {
+            generator.writeStringField(metadata.getKey(), metadata.getValue());
+          }
+          generator.writeEndObject();
+          generator.writeArrayFieldStart("variants");
+          for (var variant : configuration.variants()) {
+            writeEntry(generator, variant);
+          }
+          generator.writeEndArray();
+          generator.writeFieldName("defaultVariant");
+          writeEntry(generator, configuration.defaultVariant());
+          generator.writeEndObject();
+        });
+  }
+
+  @Override
+  public <T> byte[] toByteArray(ConfigurationEntry<T> configurationEntry) {
+    requireNonNull(configurationEntry, "configurationEntry must be defined");
+    return write(generator -> writeEntry(generator, configurationEntry));
+  }
+
+  private interface Writer {
+    void write(JsonGenerator generator) throws IOException;
+  }
+
+  private byte[] write(Writer writer) {
+    var output = new ByteArrayOutputStream(256);
+    try (var generator = jsonFactory.createGenerator(output)) {
+      writer.write(generator);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to create a json data representation", e);
+    }
+    return output.toByteArray();
+  }
+
+  private static void writeEntry(JsonGenerator generator, ConfigurationEntry<?> entry)
+      throws IOException {
+    generator.writeStartObject();
+    generator.writeStringField("name", entry.name());
+    generator.writeFieldName("value");
+    generator.writeObject(entry.value());
+    generator.writeStringField("description", entry.description());
+    generator.writeEndObject();
+  }
+
+  private static String readKey(JsonParser parser) throws IOException {
+    expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+    String key = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      var field = parser.currentName();
+      parser.nextToken();
+      if (field.equals("key")) {
+        key = parser.getValueAsString();
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return key;
+  }
+
+  private static void readMetadata(JsonParser parser, Map<String, String> metadata)
+      throws IOException {
+    expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      var field = parser.currentName();
+      parser.nextToken();
+      metadata.put(field, parser.getValueAsString());
+    }
+  }
+
+  private <T> void readVariants(
+      JsonParser parser, Function<JsonNode, T> valueConverter, List<ConfigurationEntry<T>> variants)
+      throws IOException {
+    expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      variants.add(readEntry(parser, valueConverter));
+    }
+  }
+
+  /** Only the value is read as a node, as {@link JsonNodeToValueConverterProvider} expects one. */
+  private <T> ConfigurationEntry<T> readEntry(
+      JsonParser parser, Function<JsonNode, T> valueConverter) throws IOException {
+    expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+    String name = null;
+    T value = null;
+    String description = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      var field = parser.currentName();
+      var token = parser.nextToken();
+      switch (field) {
+        case "name" -> name = parser.getValueAsString();
+        case "value" -> {
+          if (token != JsonToken.VALUE_NULL) {
+            value = valueConverter.apply(objectMapper.readTree(parser));
+          }
+        }
+        case "description" -> description = parser.getValueAsString();
+        default -> parser.skipChildren();
+      }
+    }
+    return new ConfigurationEntry<>(name, value, description);
+  }
+
+  private static void expect(JsonParser parser, JsonToken token, JsonToken expected)
+      throws IOException {
+    if (token != expected) {
+      throw new IOException(
+          "Expected " + expected + " but found " + token + " at " + parser.currentLocation());
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package com.github.jpthiery.arthena.zookeeper.json;
+
+import static java.util.Objects.requireNonNull;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Converters provided by a {@link JsonNodeToValueConverterProvider}, asked once per class then
+ * reused for every value of that class.
+ */
+class ValueConverters {
+
+  private final JsonNodeToValueConverterProvider jsonNodeToValueConverterProvider;
+
+  private final Map<Class<?>, Function<JsonNode, ?>> converters;
+
+  ValueConverters(JsonNodeToValueConverterProvider jsonNodeToValueConverterProvider) {
+    requireNonNull(
+        jsonNodeToValueConverterProvider, "jsonNodeToValueConverterProvider must be defined");
+    this.jsonNodeToValueConverterProvider = jsonNodeToValueConverterProvider;
+    this.converters = new ConcurrentHashMap<>();
+  }
+
+  @SuppressWarnings("unchecked")
+  <T> Function<JsonNode, T> of(Class<T> tClass) {
+    requireNonNull(tClass, "tClass must be defined");
+    var valueConverter =
+        (Function<JsonNode, T>)
+            converters.computeIfAbsent(tClass, jsonNodeToValueConverterProvider::provide);
+    if (valueConverter == null) {
+      throw new IllegalArgumentException("No value converter available for " + tClass.getName());
+    }
+    return valueConverter;
+  }
+}
@@ -0,0 +1,112 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.github.jpthiery.arthena.domain.Configuration;
+import com.github.jpthiery.arthena.domain.ConfigurationEntry;
+import com.github.jpthiery.arthena.domain.ConfigurationKey;
+import com.github.jpthiery.arthena.zookeeper.json.JsonDataMarshaller;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+class CompressingDataMarshallerTest implements ConfigurationFixture {
+
+  private final JsonDataMarshaller jsonDataMarshaller = new JsonDataMarshaller();
+
+  private final CompressingDataMarshaller sut = new CompressingDataMarshaller(jsonDataMarshaller);
+
+  @Test
+  public void itShouldKeepSmallPayloadsUncompressed() {
+    assertThat(sut.toByteArray(CONFIGURATION))
+        .isEqualTo(jsonDataMarshaller.toByteArray(CONFIGURATION));
+    assertThat(new CompressingDataMarshaller(jsonDataMarshaller, 0).toByteArray(ON))
+        .isEqualTo(jsonDataMarshaller.toByteArray(ON));
+    assertThat(sut.configurationFromByteArray(sut.toByteArray(CONFIGURATION), Boolean.class))
+        .isEqualTo(CONFIGURATION);
+  }
+
+  @Test
+  public void itShouldCompressLargePayloads() {
+    var variants = new ArrayList<ConfigurationEntry<Integer>>();
+    for (var i = 0; i < 200; i++) {
+      variants.add(new ConfigurationEntry<>("variant" + i, i, "A long description of variant"));
+    }
+    var configuration =
+        new Configuration<>(
+            new ConfigurationKey("my.app.pool"),
+            "Pool",
+            Collections.emptyMap(),
+            variants,
+            variants.getFirst());
+
+    var actual = sut.toByteArray(configuration);
+
+    assertThat(actual[0]).isEqualTo(CompressingDataMarshaller.MARKER);
+    assertThat(actual.length).isLessThan(jsonDataMarshaller.toByteArray(configuration).length / 4);
+    assertThat(sut.configurationFromByteArray(actual, Integer.class)).isEqualTo(configuration);
+  }
+
+  @Test
+  public void itShouldReadPayloadsWrittenWithoutCompression() {
+    var sutWithoutThreshold = new CompressingDataMarshaller(jsonDataMarshaller, 0);
+
+    assertThat(
+            sutWithoutThreshold.configurationFromByteArray(
+                jsonDataMarshaller.toByteArray(CONFIGURATION), Boolean.class))
+        .isEqualTo(CONFIGURATION);
+    assertThat(
+            sutWithoutThreshold.configurationEntryFromByteArray(
+                jsonDataMarshaller.toByteArray(ON), Boolean.class))
+        .isEqualTo(ON);
+    assertThat(sutWithoutThreshold.configurationEntryFromByteArray(new byte[0], Boolean.class))
+        .isNull();
+  }
+
+  @Test
+  public void itShouldRejectUncompressedLengthOutOfBounds() {
+    var compressed = compressedConfiguration();
+
+    var lengths =
+        new int[] {
+          -1, CompressingDataMarshaller.MAX_UNCOMPRESSED_LENGTH + 1, compressed.length * 2000
+        };
+    for (var length : lengths) {
+      ByteBuffer.wrap(compressed, 2, Integer.BYTES).putInt(length);
+      assertThatThrownBy(() -> sut.configurationFromByteArray(compressed, Integer.class))
+          .isInstanceOf(IllegalArgumentException.class)
+          .hasMessageStartingWith("Invalid uncompressed length");
+    }
+  }
+
+  @Test
+  public void itShouldRejectPayloadNotInflatingToItsLength() {
+    var compressed = compressedConfiguration();
+    var length = ByteBuffer.wrap(compressed, 2, Integer.BYTES).getInt();
+
+    ByteBuffer.wrap(compressed, 2, Integer.BYTES).putInt(length - 1);
+    assertThatThrownBy(() -> sut.configurationFromByteArray(compressed, Integer.class))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("inflates beyond");
+    ByteBuffer.wrap(compressed, 2, Integer.BYTES).putInt(length + 1);
+    assertThatThrownBy(() -> sut.configurationFromByteArray(compressed, Integer.class))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("truncated");
+  }
+
+  private byte[] compressedConfiguration() {
+    var variants = new ArrayList<ConfigurationEntry<Integer>>();
+    for (var i = 0; i < 200; i++) {
+      variants.add(new ConfigurationEntry<>("variant" + i, i, "A long description of variant"));
+    }
+    return sut.toByteArray(
+        new Configuration<>(
+            new ConfigurationKey("my.app.pool"),
+            "Pool",
+            Collections.emptyMap(),
+            variants,
+            variants.getFirst()));
+  }
+}
@@ -0,0 +1,157 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+
+class NotificationDispatcherTest {
+
+  private final ManualExecutor executor = new ManualExecutor();
+
+  private final NotificationDispatcher sut = new NotificationDispatcher(executor);
+
+  @Test
+  public void itShouldCoalesceTasksQueuedForASameKey() {
+    var runs = new ArrayList<String>();
+
+    sut.dispatch("key", () -> runs.add("first"));
+    sut.dispatch("key", () -> runs.add("second"));
+    sut.dispatch("key", () -> runs.add("third"));
+
+    assertThat(sut.statistics().queueDepth()).isEqualTo(1);
+    executor.runAll();
+    assertThat(runs).containsExactly("third");
+    assertThat(sut.statistics().queueDepth()).isZero();
+    assertThat(sut.statistics().dispatched()).isEqualTo(1);
+  }
+
+  @Test
+  public void itShouldRunTasksOfASameKeyInOrder() {
+    var runs = new ArrayList<String>();
+
+    sut.dispatch(
+        "key",
+        () -> {
+          runs.add("first");
+          sut.dispatch("key", () -> runs.add("second"));
+        });
+    executor.runAll();
+
+    assertThat(runs).containsExactly("first", "second");
+    assertThat(executor.executed).isEqualTo(1);
+  }
+
+  @Test
+  public void itShouldNotDelayOtherKeys() {
+    var runs = new ArrayList<String>();
+
+    sut.dispatch("key", () -> runs.add("key"));
+    sut.dispatch("otherKey", () -> runs.add("otherKey"));
+    executor.runLast();
+
+    assertThat(runs).containsExactly("otherKey");
+    assertThat(sut.statistics().queueDepth()).isEqualTo(1);
+  }
+
+  @Test
+  public void itShouldRunRejectedTasksOnCallingThread() {
+    var runs = new ArrayList<String>();
+    var rejecting =
+        new NotificationDispatcher(
+            task -> {
+              throw new RejectedExecutionException("saturated");
+            });
+
+    rejecting.dispatch("key", () -> runs.add(Thread.currentThread().getName()));
+
+    assertThat(runs).containsExactly(Thread.currentThread().getName());
+    assertThat(rejecting.statistics().queueDepth()).isZero();
+    assertThat(rejecting.keyCount()).isZero();
+  }
+
+  @Test
+  public void itShouldRemoveQueuesOfKeysOnceDrained() {
+    for (var index = 0; index < 10; index++) {
+      sut.dispatch("key" + index, () -> {});
+    }
+    assertThat(sut.keyCount()).isEqualTo(10);
+
+    executor.runAll();
+
+    assertThat(sut.keyCount()).isZero();
+  }
+
+  @Test
+  public void itShouldRunWaitedTaskOnCallingThreadFromANotificationTask() {
+    var runs = new ArrayList<String>();
+
+    sut.dispatch(
+        "key",
+        () -> {
+          var completion = new CompletableFuture<Void>();
+          sut.dispatchAndWait(
+              "otherKey",
+              () -> {
+                runs.add("otherKey");
+                completion.complete(null);
+              },
+              completion);
+          runs.add("key");
+        });
+    executor.runAll();
+
+    assertThat(runs).containsExactly("otherKey", "key");
+    assertThat(executor.executed).isEqualTo(1);
+  }
+
+  @Test
+  public void itShouldFailWaitedTaskNotCompletedInTime() {
+    var completion = new CompletableFuture<Void>();
+    var waiting = new NotificationDispatcher(executor, Duration.ofMillis(10));
+
+    assertThatThrownBy(() -> waiting.dispatchAndWait("key", () -> {}, completion))
+        .isInstanceOf(CompletionException.class)
+        .hasCauseInstanceOf(TimeoutException.class);
+    assertThat(completion).isCompletedExceptionally();
+  }
+
+  private static class ManualExecutor implements Executor {
+
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    private final List<Runnable> submitted = new ArrayList<>();
+
+    private int executed;
+
+    @Override
+    public void execute(Runnable command) {
+      tasks.add(command);
+      submitted.add(command);
+    }
+
+    void runAll() {
+      while (!tasks.isEmpty()) {
+        executed++;
+        tasks.poll().run();
+      }
+    }
+
+    void runLast() {
+      var last = submitted.getLast();
+      tasks.remove(last);
+      executed++;
+      last.run();
+    }
+  }
+}
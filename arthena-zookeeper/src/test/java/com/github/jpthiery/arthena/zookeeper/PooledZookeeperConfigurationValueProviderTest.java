@@ -0,0 +1,159 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.jpthiery.arthena.ValueChangeListener;
+import com.github.jpthiery.arthena.domain.Configuration;
+import com.github.jpthiery.arthena.domain.ConfigurationEntry;
+import com.github.jpthiery.arthena.domain.ConfigurationKey;
+import com.github.jpthiery.arthena.metrics.JmxMetricsRecorder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.zookeeper.ZooKeeper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(ZookeeperProvider.class)
+class PooledZookeeperConfigurationValueProviderTest implements ConfigurationFixture {
+
+  private static final int KEY_COUNT = 20;
+
+  private final ZooKeeper zooKeeper;
+
+  private final ZooKeeper additionalZooKeeper;
+
+  private final ZookeeperConfigurationManager configurationManager;
+
+  PooledZookeeperConfigurationValueProviderTest(ZooKeeper zooKeeper) {
+    this.zooKeeper = zooKeeper;
+    this.additionalZooKeeper = ZookeeperProvider.provideAdditionalZookeeper();
+    this.configurationManager = new ZookeeperConfigurationManager(zooKeeper);
+  }
+
+  @AfterEach
+  public void tearDown() throws InterruptedException {
+    new ZookeeperClient(zooKeeper).deleteZNodeAndAllChildren(new ZnodePath("/arthena"));
+    additionalZooKeeper.close();
+  }
+
+  @Test
+  public void itShouldReadValuesOfKeysSpreadAcrossSessions() throws Exception {
+    var keys = storeConfigurations();
+    var sut =
+        new PooledZookeeperConfigurationValueProvider(List.of(zooKeeper, additionalZooKeeper));
+
+    var actual = sut.getValues(keys, DEV, Boolean.class);
+
+    assertThat(actual).hasSize(KEY_COUNT);
+    for (var index = 0; index < KEY_COUNT; index++) {
+      var expected = Optional.of(index % 2 == 0 ? Boolean.FALSE : Boolean.TRUE);
+      assertThat(actual.get(keys.get(index))).isEqualTo(expected);
+      assertThat(sut.getValue(keys.get(index), DEV, Boolean.class)).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void itShouldPrefetchEveryConfigurationOnce() throws Exception {
+    storeConfigurations();
+    var sut =
+        new PooledZookeeperConfigurationValueProvider(
+            List.of(zooKeeper, additionalZooKeeper),
+            null,
+            ValueProviderOptions.defaults().withStoreNodesLocally(true));
+
+    var actual = sut.prefetch(new ConfigurationKey("my.pool"), Set.of(DEV));
+
+    assertThat(actual).isEqualTo(KEY_COUNT);
+  }
+
+  @Test
+  public void itShouldScanOnceAndPrefetchEveryConfigurationOnTheSessionServingIt()
+      throws Exception {
+    var keys = storeConfigurations();
+    var recorders = List.of(new JmxMetricsRecorder(), new JmxMetricsRecorder());
+    var sut =
+        new PooledZookeeperConfigurationValueProvider(
+            List.of(zooKeeper, additionalZooKeeper),
+            null,
+            recorders.stream()
+                .map(
+                    recorder ->
+                        ValueProviderOptions.defaults()
+                            .withStoreNodesLocally(true)
+                            .withMetricsRecorder(recorder))
+                .toList());
+    var prefix = new ConfigurationKey("my.pool");
+
+    var actual = sut.prefetch(prefix, Set.of(DEV));
+
+    assertThat(actual).isEqualTo(KEY_COUNT);
+    var scanningIndex = sessionIndex(prefix, recorders.size());
+    for (var index = 0; index < recorders.size(); index++) {
+      var sessionIndex = index;
+      var servedKeys =
+          keys.stream().filter(key -> sessionIndex(key, recorders.size()) == sessionIndex).count();
+      var operations = recorders.get(index).getOperations();
+      assertThat(servedKeys).isPositive();
+      // The CONFIG, key, default value and DEV value nodes of every served key are watched.
+      assertThat(operations.get("EXISTS").getCount()).isEqualTo(servedKeys * 4);
+      if (index == scanningIndex) {
+        assertThat(operations.get("MULTI").getCount()).isGreaterThan(1);
+      } else {
+        assertThat(operations.get("MULTI").getCount()).isEqualTo(1);
+      }
+    }
+  }
+
+  @Test
+  public void itShouldNotifyChangesFromTheSessionServingTheKey() throws Exception {
+    var keys = storeConfigurations();
+    var sut =
+        new PooledZookeeperConfigurationValueProvider(List.of(zooKeeper, additionalZooKeeper));
+    var notified = new CountDownLatch(keys.size());
+    for (var key : keys) {
+      sut.subscribeToValueChange(
+          key,
+          new ValueChangeListener() {
+            @Override
+            public <T> void valueChange(
+                ConfigurationKey key,
+                ConfigurationEntry<T> previous,
+                ConfigurationEntry<T> current) {
+              notified.countDown();
+            }
+          },
+          Boolean.class);
+    }
+
+    for (var key : keys) {
+      configurationManager.defineValue(key, OFF, Boolean.class);
+    }
+
+    assertThat(notified.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(sut.notificationStatistics().dispatched()).isGreaterThanOrEqualTo(KEY_COUNT);
+  }
+
+  private static int sessionIndex(ConfigurationKey key, int sessionCount) {
+    return Math.floorMod(key.key().hashCode(), sessionCount);
+  }
+
+  private List<ConfigurationKey> storeConfigurations() throws Exception {
+    var keys = new ArrayList<ConfigurationKey>(KEY_COUNT);
+    for (var index = 0; index < KEY_COUNT; index++) {
+      var key = new ConfigurationKey("my.pool.key" + index);
+      configurationManager.store(
+          new Configuration<>(key, "Key " + index, Collections.emptyMap(), List.of(ON, OFF), ON));
+      if (index % 2 == 0) {
+        configurationManager.defineValue(key, DEV, OFF, Boolean.class);
+      }
+      keys.add(key);
+    }
+    return keys;
+  }
+}
@@ -0,0 +1,65 @@
+package com.github.jpthiery.arthena.zookeeper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.jpthiery.arthena.domain.ConfigurationKey;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class ValueCacheTest {
+
+  private static final ZnodePath ROOT = new ZnodePath("/arthena");
+
+  private static final ConfigurationKey KEY = new ConfigurationKey("my.key");
+
+  private static final ZnodePath VALUE_PATH = new ZnodePath("/my/key/value");
+
+  private static final ValueCache.Slot SLOT = new ValueCache.Slot(List.of(), Boolean.class);
+
+  private final ValueCache sut = new ValueCache(ROOT);
+
+  @Test
+  public void itShouldCacheLoadedValue() {
+    var pendingLoad = sut.startLoad(KEY, SLOT, List.of(VALUE_PATH));
+
+    pendingLoad.publish(Optional.of(Boolean.TRUE));
+
+    assertThat(sut.<Boolean>getIfPresent(KEY, SLOT)).contains(Boolean.TRUE);
+  }
+
+  @Test
+  public void itShouldNotCacheValueOfFirstLoadChangedBeforePublish() {
+    var pendingLoad = sut.startLoad(KEY, SLOT, List.of(VALUE_PATH));
+
+    sut.invalidatePath(VALUE_PATH.withParent(ROOT).path());
+    pendingLoad.publish(Optional.of(Boolean.TRUE));
+
+    assertThat(sut.<Boolean>getIfPresent(KEY, SLOT)).isNull();
+  }
+
+  @Test
+  public void itShouldNotCacheValueOfReloadChangedBeforePublish() {
+    sut.startLoad(KEY, SLOT, List.of(VALUE_PATH)).publish(Optional.of(Boolean.TRUE));
+    sut.invalidatePath(VALUE_PATH.withParent(ROOT).path());
+    var pendingLoad = sut.startLoad(KEY, SLOT, List.of(VALUE_PATH));
+
+    sut.invalidatePath(VALUE_PATH.withParent(ROOT).path());
+    pendingLoad.publish(Optional.of(Boolean.FALSE));
+
+    assertThat(sut.<Boolean>getIfPresent(KEY, SLOT)).isNull();
+  }
+
+  @Test
+  public void itShouldInvalidateValueLoadedAfterAChange() {
+    var pendingLoad = sut.startLoad(KEY, SLOT, List.of(VALUE_PATH));
+    sut.invalidatePath(VALUE_PATH.withParent(ROOT).path());
+    pendingLoad.publish(Optional.of(Boolean.TRUE));
+
+    sut.startLoad(KEY, SLOT, List.of(VALUE_PATH)).publish(Optional.of(Boolean.FALSE));
+    assertThat(sut.<Boolean>getIfPresent(KEY, SLOT)).contains(Boolean.FALSE);
+    sut.invalidatePath(VALUE_PATH.withParent(ROOT).path());
+
+    assertThat(sut.<Boolean>getIfPresent(KEY, SLOT)).isNull();
+  }
+}
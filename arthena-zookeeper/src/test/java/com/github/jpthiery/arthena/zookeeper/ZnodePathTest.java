@@ -1,6 +1,8 @@
 package com.github.jpthiery.arthena.zookeeper;
 
+import com.github.jpthiery.arthena.domain.ConfigurationKey;
 import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
@@ -23,4 +25,27 @@ class ZnodePathTest {
             })
         .isInstanceOf(IllegalArgumentException.class);
   }
+
+  @Test
+  public void itShouldProvideAncestors() {
+    var actual = new ZnodePath("/arthena/my/app").ancestors();
+
+    Assertions.assertThat(actual)
+        .containsExactly(new ZnodePath("/arthena"), new ZnodePath("/arthena/my"));
+  }
+
+  @Test
+  public void itShouldProvideParent() {
+    Assertions.assertThat(new ZnodePath("/arthena/my/app").parent())
+        .isEqualTo(new ZnodePath("/arthena/my"));
+    Assertions.assertThat(new ZnodePath("/arthena").parent()).isNull();
+  }
+
+  @Test
+  public void itShouldConvertToConfigurationKeyBackAndForth() {
+    var key = new ConfigurationKey("my.app.props");
+
+    Assertions.assertThat(ZnodePath.from(key)).isEqualTo(new ZnodePath("/my/app/props"));
+    Assertions.assertThat(ZnodePath.from(key).toConfigurationKey()).isEqualTo(key);
+  }
 }
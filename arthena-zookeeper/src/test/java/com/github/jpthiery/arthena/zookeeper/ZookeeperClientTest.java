@@ -1,7 +1,10 @@
 package com.github.jpthiery.arthena.zookeeper;
 
+import static com.github.jpthiery.arthena.zookeeper.ZookeeperAsserter.assertThat;
 import static java.util.Objects.requireNonNull;
 
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.ZooKeeper;
 import org.assertj.core.api.Assertions;
@@ -34,4 +37,46 @@ class ZookeeperClientTest {
     var actual = sut.createZNode(new ZnodePath("/a/b/c"));
     Assertions.assertThat(actual).isEqualTo(nodePath);
   }
+
+  @Test
+  public void itShouldCreateNodesWithMissingParentsInOneTransaction()
+      throws InterruptedException, KeeperException {
+    sut.createZNode(new ZnodePath("/a"));
+    var nodes = new LinkedHashMap<ZnodePath, byte[]>();
+    nodes.put(new ZnodePath("/a/b/c/config"), "config".getBytes(StandardCharsets.UTF_8));
+    nodes.put(new ZnodePath("/a/b/c/value"), "value".getBytes(StandardCharsets.UTF_8));
+
+    sut.createZNodes(nodes);
+
+    assertThat(zooKeeper)
+        .zNodeExist("/arthena/a/b/c/config")
+        .hasValue("config".getBytes(StandardCharsets.UTF_8));
+    assertThat(zooKeeper)
+        .zNodeExist("/arthena/a/b/c/value")
+        .hasValue("value".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void itShouldNotCreateAnyNodeWhenOneAlreadyExist()
+      throws InterruptedException, KeeperException {
+    sut.createZNode(new ZnodePath("/a/b/c/value"));
+    var nodes = new LinkedHashMap<ZnodePath, byte[]>();
+    nodes.put(new ZnodePath("/a/b/c/config"), new byte[0]);
+    nodes.put(new ZnodePath("/a/b/c/value"), new byte[0]);
+
+    Assertions.assertThatThrownBy(() -> sut.createZNodes(nodes))
+        .isInstanceOf(KeeperException.NodeExistsException.class);
+    Assertions.assertThat(zooKeeper.exists("/arthena/a/b/c/config", false)).isNull();
+  }
+
+  @Test
+  public void itShouldCreateNodeUnderAParentDeletedByAnotherClient()
+      throws InterruptedException, KeeperException {
+    sut.createZNode(new ZnodePath("/a/b/c"));
+    new ZookeeperClient(zooKeeper).deleteZNodeAndAllChildren(new ZnodePath("/a"));
+
+    sut.createZNode(new ZnodePath("/a/b/d"));
+
+    assertThat(zooKeeper).zNodeExist("/arthena/a/b/d");
+  }
 }
@@ -5,8 +5,21 @@ import static java.util.Objects.requireNonNull;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import com.github.jpthiery.arthena.ConfigurationManager;
+import com.github.jpthiery.arthena.domain.Configuration;
 import com.github.jpthiery.arthena.domain.ConfigurationEntry;
+import com.github.jpthiery.arthena.domain.ConfigurationKey;
+import com.github.jpthiery.arthena.domain.ValueDefinition;
+import com.github.jpthiery.arthena.metrics.JmxMetricsRecorder;
+import com.github.jpthiery.arthena.metrics.LatencySnapshot;
+import com.github.jpthiery.arthena.zookeeper.json.JsonDataMarshaller;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.apache.zookeeper.ZooKeeper;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterEach;
@@ -19,6 +32,9 @@ public class ZookeeperConfigurationManagerTest implements ConfigurationFixture {
 
   private static final Logger LOGGER = getLogger(ZookeeperConfigurationManagerTest.class);
 
+  private static final ConfigurationEntry<Integer> LARGE_POOL =
+      new ConfigurationEntry<>("large", 200, "Large");
+
   private final ZooKeeper zookeeper;
 
   private final ZookeeperConfigurationManager sut;
@@ -77,6 +93,23 @@ public class ZookeeperConfigurationManagerTest implements ConfigurationFixture {
                 .getBytes(StandardCharsets.UTF_8));
   }
 
+  @Test
+  public void itShouldUpdateConfigurationWhenStoredAgain() {
+    sut.store(CONFIGURATION);
+    var updatedConfiguration =
+        new Configuration<>(
+            CONFIGURATION.key(), "Log level", Collections.emptyMap(), List.of(ON, OFF), OFF);
+
+    sut.store(updatedConfiguration);
+
+    assertThat(zookeeper)
+        .zNodeExist("/arthena/my/app/awersome/loglevel/config")
+        .hasValue(new JsonDataMarshaller().toByteArray(updatedConfiguration));
+    assertThat(zookeeper)
+        .zNodeExist("/arthena/my/app/awersome/loglevel/value")
+        .hasValue(new JsonDataMarshaller().toByteArray(ON));
+  }
+
   @Test
   public void itShouldUpdateConfigurationValue() throws ConfigurationManager.ConfigurationNotFound {
 
@@ -132,4 +165,244 @@ public class ZookeeperConfigurationManagerTest implements ConfigurationFixture {
             })
         .isInstanceOf(IllegalArgumentException.class);
   }
+
+  @Test
+  public void itShouldListStoredConfigurations() throws Exception {
+    var parentConfiguration =
+        new Configuration<>(
+            new ConfigurationKey("my.app"),
+            "Pool size",
+            Map.of("owner", "team"),
+            List.of(new ConfigurationEntry<>("small", 10, "Small"), LARGE_POOL),
+            LARGE_POOL);
+    sut.store(CONFIGURATION);
+    sut.store(parentConfiguration);
+    sut.defineValue(CONFIGURATION.key(), DEV, OFF, Boolean.class);
+    var keys = new ArrayList<ConfigurationKey>();
+    for (var i = 0; i < 100; i++) {
+      var key = new ConfigurationKey("my.other.key" + i);
+      sut.store(
+          new Configuration<>(key, "Key " + i, Collections.emptyMap(), List.of(ON, OFF), ON));
+      keys.add(key);
+    }
+
+    var actual = sut.list();
+
+    Assertions.assertThat(actual).hasSize(102).contains(CONFIGURATION, parentConfiguration);
+    Assertions.assertThat(sut.stream().map(Configuration::key)).containsAll(keys);
+  }
+
+  @Test
+  public void itShouldListConfigurationsWithoutARequestPerNode() throws Exception {
+    var definitions = new ArrayList<ValueDefinition<?>>();
+    for (var i = 0; i < 50; i++) {
+      var key = new ConfigurationKey("my.scanned.key" + i);
+      sut.store(
+          new Configuration<>(key, "Key " + i, Collections.emptyMap(), List.of(ON, OFF), ON));
+      definitions.add(new ValueDefinition<>(key, DEV, OFF, Boolean.class));
+    }
+    sut.defineValues(definitions);
+    var metricsRecorder = new JmxMetricsRecorder();
+    var scanningManager = new ZookeeperConfigurationManager(zookeeper, null, metricsRecorder);
+
+    var actual = scanningManager.list();
+
+    Assertions.assertThat(actual).hasSize(50);
+    Assertions.assertThat(
+            metricsRecorder.getOperations().values().stream()
+                .mapToLong(LatencySnapshot::getCount)
+                .sum())
+        .isLessThanOrEqualTo(10);
+  }
+
+  @Test
+  public void itShouldListNothingWhenNothingIsStored() {
+    Assertions.assertThat(sut.list()).isEmpty();
+  }
+
+  @Test
+  public void itShouldDefineValueInTwoRoundTripsWithDirectRequests() throws Exception {
+    var metricsRecorder = new JmxMetricsRecorder();
+    var directManager =
+        new ZookeeperConfigurationManager(zookeeper, null, metricsRecorder, true);
+    sut.store(CONFIGURATION);
+
+    directManager.defineValue(CONFIGURATION.key(), OFF, Boolean.class);
+
+    var operations = metricsRecorder.getOperations();
+    Assertions.assertThat(operations.values().stream().mapToLong(LatencySnapshot::getCount).sum())
+        .isEqualTo(2);
+    Assertions.assertThat(operations.get("MULTI").getCount()).isEqualTo(2);
+    var provider = new ZookeeperConfigurationValueProvider(zookeeper);
+    Assertions.assertThat(provider.getValue(CONFIGURATION.key(), Boolean.class)).contains(false);
+    Assertions.assertThatThrownBy(
+            () -> directManager.defineValue(new ConfigurationKey("not.stored"), OFF, Boolean.class))
+        .isInstanceOf(ConfigurationManager.ConfigurationNotFound.class);
+  }
+
+  @Test
+  public void itShouldDeleteEveryConfigurationUnderPrefix() throws Exception {
+    var otherConfiguration =
+        new Configuration<>(
+            new ConfigurationKey("my.other.loglevel"),
+            "Loglevel",
+            Collections.emptyMap(),
+            List.of(ON, OFF),
+            ON);
+    sut.store(CONFIGURATION);
+    sut.store(
+        new Configuration<>(
+            new ConfigurationKey("my.app"), "App", Collections.emptyMap(), List.of(ON, OFF), ON));
+    sut.store(otherConfiguration);
+    sut.defineValue(CONFIGURATION.key(), DEV, OFF, Boolean.class);
+
+    var actual = sut.deletePrefix(new ConfigurationKey("my.app"));
+
+    Assertions.assertThat(actual).isEqualTo(2);
+    Assertions.assertThat(zookeeper.exists("/arthena/my/app", false)).isNull();
+    Assertions.assertThat(sut.list()).containsExactly(otherConfiguration);
+    Assertions.assertThat(sut.deletePrefix(new ConfigurationKey("my.app"))).isZero();
+  }
+
+  @Test
+  public void itShouldDefineValuesInOneTransaction() throws Exception {
+    var metricsRecorder = new JmxMetricsRecorder();
+    var batchManager = new ZookeeperConfigurationManager(zookeeper, null, metricsRecorder);
+    var otherKey = new ConfigurationKey("my.other.loglevel");
+    sut.store(CONFIGURATION);
+    sut.store(new Configuration<>(otherKey, "Other", Collections.emptyMap(), List.of(ON, OFF), ON));
+    sut.defineValue(CONFIGURATION.key(), DEV, ON, Boolean.class);
+
+    batchManager.defineValues(
+        List.of(
+            new ValueDefinition<>(CONFIGURATION.key(), OFF, Boolean.class),
+            new ValueDefinition<>(CONFIGURATION.key(), DEV, OFF, Boolean.class),
+            new ValueDefinition<>(otherKey, PROD, ON, Boolean.class),
+            new ValueDefinition<>(otherKey, PROD, OFF, Boolean.class)));
+
+    var operations = metricsRecorder.getOperations();
+    Assertions.assertThat(operations.values().stream().mapToLong(LatencySnapshot::getCount).sum())
+        .isEqualTo(2);
+    Assertions.assertThat(operations.get("MULTI").getCount()).isEqualTo(2);
+    var provider = new ZookeeperConfigurationValueProvider(zookeeper);
+    Assertions.assertThat(provider.getValue(CONFIGURATION.key(), Boolean.class)).contains(false);
+    Assertions.assertThat(provider.getValue(CONFIGURATION.key(), DEV, Boolean.class))
+        .contains(false);
+    Assertions.assertThat(provider.getValue(otherKey, PROD, Boolean.class)).contains(false);
+  }
+
+  @Test
+  public void itShouldDefineValuesTooLargeForOneTransactionInSeveralOnes() throws Exception {
+    var metricsRecorder = new JmxMetricsRecorder();
+    var batchManager = new ZookeeperConfigurationManager(zookeeper, null, metricsRecorder);
+    var definitions = new ArrayList<ValueDefinition<?>>();
+    for (var i = 0; i < 12; i++) {
+      var key = new ConfigurationKey("my.large.key" + i);
+      var large = new ConfigurationEntry<>("large", "x".repeat(64 * 1024), "Large");
+      var small = new ConfigurationEntry<>("small", "x", "Small");
+      sut.store(
+          new Configuration<>(
+              key, "Key " + i, Collections.emptyMap(), List.of(large, small), small));
+      definitions.add(new ValueDefinition<>(key, DEV, large, String.class));
+    }
+
+    batchManager.defineValues(definitions);
+
+    // One multi read of the configurations and values, then at least two write transactions.
+    Assertions.assertThat(metricsRecorder.getOperations().get("MULTI").getCount())
+        .isGreaterThanOrEqualTo(3);
+    var provider = new ZookeeperConfigurationValueProvider(zookeeper);
+    for (var definition : definitions) {
+      Assertions.assertThat(provider.getValue(definition.key(), DEV, String.class))
+          .contains("x".repeat(64 * 1024));
+    }
+  }
+
+  @Test
+  public void itShouldNotDefineAnyValueWhenOneConfigurationIsNotFound() {
+    sut.store(CONFIGURATION);
+    var notStored = new ConfigurationKey("not.stored");
+
+    Assertions.assertThatThrownBy(
+            () ->
+                sut.defineValues(
+                    List.of(
+                        new ValueDefinition<>(CONFIGURATION.key(), OFF, Boolean.class),
+                        new ValueDefinition<>(notStored, OFF, Boolean.class))))
+        .isInstanceOf(ConfigurationManager.ConfigurationNotFound.class);
+    var provider = new ZookeeperConfigurationValueProvider(zookeeper);
+    Assertions.assertThat(provider.getValue(CONFIGURATION.key(), Boolean.class)).contains(true);
+  }
+
+  @Test
+  public void itShouldDefineValueOnlyWhenVersionIsTheExpectedOne() throws Exception {
+    sut.store(CONFIGURATION);
+    var key = CONFIGURATION.key();
+    Assertions.assertThat(sut.valueVersion(key, DEV))
+        .isEqualTo(ConfigurationManager.UNDEFINED_VERSION);
+
+    var created =
+        sut.defineValue(key, DEV, OFF, Boolean.class, ConfigurationManager.UNDEFINED_VERSION);
+
+    Assertions.assertThat(created).isEqualTo(sut.valueVersion(key, DEV));
+    Assertions.assertThatThrownBy(
+            () ->
+                sut.defineValue(
+                    key, DEV, ON, Boolean.class, ConfigurationManager.UNDEFINED_VERSION))
+        .isInstanceOf(ConfigurationManager.ConcurrentModification.class);
+    var defaultVersion = sut.valueVersion(key, null);
+    sut.defineValue(key, OFF, Boolean.class);
+    Assertions.assertThatThrownBy(
+            () -> sut.defineValue(key, null, ON, Boolean.class, defaultVersion))
+        .isInstanceOf(ConfigurationManager.ConcurrentModification.class);
+    var updated = sut.defineValue(key, DEV, ON, Boolean.class, created);
+    Assertions.assertThat(updated).isEqualTo(created + 1);
+    var provider = new ZookeeperConfigurationValueProvider(zookeeper);
+    Assertions.assertThat(provider.getValue(key, DEV, Boolean.class)).contains(true);
+    Assertions.assertThat(provider.getValue(key, Boolean.class)).contains(false);
+  }
+
+  @Test
+  public void itShouldNotLoseConcurrentConditionalDefinitions() throws Exception {
+    sut.store(CONFIGURATION);
+    var key = CONFIGURATION.key();
+    var writers = 4;
+    var definitionsPerWriter = 10;
+    var executor = Executors.newFixedThreadPool(writers);
+    try {
+      var futures = new ArrayList<Future<Integer>>();
+      for (var writer = 0; writer < writers; writer++) {
+        // Each writer has its own manager, as if it was running on its own node
+        var manager = new ZookeeperConfigurationManager(zookeeper);
+        futures.add(
+            executor.submit(
+                () -> {
+                  var conflicts = 0;
+                  var defined = 0;
+                  while (defined < definitionsPerWriter) {
+                    var version = manager.valueVersion(key, PROD);
+                    try {
+                      manager.defineValue(
+                          key, PROD, defined % 2 == 0 ? ON : OFF, Boolean.class, version);
+                      defined++;
+                    } catch (ConfigurationManager.ConcurrentModification e) {
+                      conflicts++;
+                    }
+                  }
+                  return conflicts;
+                }));
+      }
+      var conflicts = 0;
+      for (var future : futures) {
+        conflicts += future.get(30, TimeUnit.SECONDS);
+      }
+      LOGGER.info("{} conflicts between concurrent writers", conflicts);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // Versions start at 0 when the value is created, every definition increments it
+    Assertions.assertThat(sut.valueVersion(key, PROD))
+        .isEqualTo(writers * definitionsPerWriter - 1);
+  }
 }
@@ -1,17 +1,37 @@
 package com.github.jpthiery.arthena.zookeeper;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.jpthiery.arthena.ValueChangeListener;
+import com.github.jpthiery.arthena.domain.Configuration;
 import com.github.jpthiery.arthena.domain.ConfigurationEntry;
 import com.github.jpthiery.arthena.domain.ConfigurationKey;
+import com.github.jpthiery.arthena.domain.Environment;
+import com.github.jpthiery.arthena.metrics.JmxMetricsRecorder;
+import com.github.jpthiery.arthena.metrics.LatencySnapshot;
+import com.github.jpthiery.arthena.zookeeper.json.JsonDataMarshaller;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.ZooKeeper;
 import org.apache.zookeeper.data.Stat;
@@ -19,6 +39,7 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.slf4j.Logger;
 
 @ExtendWith(ZookeeperProvider.class)
@@ -121,12 +142,574 @@ class ZookeeperConfigurationValueProviderTest implements ConfigurationFixture {
     assertThat(secondChange.current).isEqualTo(ON);
   }
 
+  @Test
+  public void itShouldNotifyWhenEnvironmentValueIsCreated() throws Exception {
+    configurationManager.store(CONFIGURATION);
+
+    var spyListener = new SpyListener(1);
+    sut.subscribeToValueChange(CONFIGURATION.key(), DEV, spyListener, Boolean.class);
+    configurationManager.defineValue(CONFIGURATION.key(), DEV, OFF, Boolean.class);
+
+    spyListener.await();
+    assertThat(spyListener.changes).containsExactly(new Change<>(CONFIGURATION.key(), null, OFF));
+  }
+
+  @Test
+  public void itShouldNotifyEverySubscriberOfSeveralKeys() throws Exception {
+    var otherConfiguration =
+        new Configuration<>(
+            new ConfigurationKey("my.app.awersome.tracing"),
+            "Tracing",
+            Collections.emptyMap(),
+            List.of(ON, OFF),
+            OFF);
+    configurationManager.store(CONFIGURATION);
+    configurationManager.store(otherConfiguration);
+
+    var spyListener = new SpyListener(1);
+    var otherSpyListener = new SpyListener(1);
+    sut.subscribeToValueChange(CONFIGURATION.key(), spyListener, Boolean.class);
+    sut.subscribeToValueChange(otherConfiguration.key(), otherSpyListener, Boolean.class);
+    configurationManager.defineValue(CONFIGURATION.key(), OFF, Boolean.class);
+    configurationManager.defineValue(otherConfiguration.key(), ON, Boolean.class);
+
+    spyListener.await();
+    otherSpyListener.await();
+    assertThat(spyListener.changes).containsExactly(new Change<>(CONFIGURATION.key(), ON, OFF));
+    assertThat(otherSpyListener.changes)
+        .containsExactly(new Change<>(otherConfiguration.key(), OFF, ON));
+  }
+
+  @Test
+  public void itShouldNotDelayNotificationsBehindASlowListener() throws Exception {
+    configurationManager.store(CONFIGURATION);
+    configurationManager.defineValue(CONFIGURATION.key(), DEV, ON, Boolean.class);
+    var slowListenerReleased = new CountDownLatch(1);
+    sut.subscribeToValueChange(
+        CONFIGURATION.key(),
+        DEV,
+        new ValueChangeListener() {
+          @Override
+          public <T> void valueChange(
+              ConfigurationKey key, ConfigurationEntry<T> previous, ConfigurationEntry<T> current) {
+            try {
+              slowListenerReleased.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        },
+        Boolean.class);
+    var spyListener = new SpyListener(1);
+    sut.subscribeToValueChange(CONFIGURATION.key(), spyListener, Boolean.class);
+
+    configurationManager.defineValue(CONFIGURATION.key(), DEV, OFF, Boolean.class);
+    configurationManager.defineValue(CONFIGURATION.key(), OFF, Boolean.class);
+
+    spyListener.await();
+    assertThat(spyListener.changes).containsExactly(new Change<>(CONFIGURATION.key(), ON, OFF));
+    assertThat(sut.notificationStatistics().dispatched()).isGreaterThanOrEqualTo(3);
+    slowListenerReleased.countDown();
+  }
+
+  @Test
+  public void itShouldProvideDefaultValueWhenEnvironmentValueIsNotDefined() {
+    configurationManager.store(CONFIGURATION);
+
+    var actual = sut.getValue(CONFIGURATION.key(), PROD, Boolean.class);
+
+    assertThat(actual).contains(Boolean.TRUE);
+  }
+
+  @Test
+  public void itShouldProvideCachedValueWithoutReachingZookeeper() throws InterruptedException {
+    configurationManager.store(CONFIGURATION);
+    var additionalZooKeeper = ZookeeperProvider.provideAdditionalZookeeper();
+    var cachedSut =
+        new ZookeeperConfigurationValueProvider(
+            additionalZooKeeper, null, ValueProviderOptions.defaults().withCacheValues(true));
+    assertThat(cachedSut.getValue(CONFIGURATION.key(), Boolean.class)).contains(Boolean.TRUE);
+
+    additionalZooKeeper.close();
+
+    assertThat(cachedSut.getValue(CONFIGURATION.key(), Boolean.class)).contains(Boolean.TRUE);
+  }
+
+  @Test
+  public void itShouldRefreshCachedValueWhenValueChanged() throws Exception {
+    configurationManager.store(CONFIGURATION);
+    var cachedSut =
+        new ZookeeperConfigurationValueProvider(
+            zooKeeper, null, ValueProviderOptions.defaults().withCacheValues(true));
+    assertThat(cachedSut.getValue(CONFIGURATION.key(), DEV, Boolean.class))
+        .contains(Boolean.TRUE);
+
+    configurationManager.defineValue(CONFIGURATION.key(), DEV, OFF, Boolean.class);
+
+    awaitUntil(
+        () ->
+            cachedSut
+                .getValue(CONFIGURATION.key(), DEV, Boolean.class)
+                .equals(Optional.of(false)));
+    assertThat(cachedSut.getValue(CONFIGURATION.key(), DEV, Boolean.class))
+        .contains(Boolean.FALSE);
+  }
+
+  @Test
+  public void itShouldProvideValueConcurrentlyWithoutLock() throws Exception {
+    configurationManager.store(CONFIGURATION);
+    configurationManager.defineValue(CONFIGURATION.key(), DEV, OFF, Boolean.class);
+    var lockFreeSut =
+        new ZookeeperConfigurationValueProvider(
+            zooKeeper,
+            null,
+            ValueProviderOptions.defaults().withReadMode(ValueProviderOptions.ReadMode.LOCK_FREE));
+
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      var reads =
+          IntStream.range(0, 50)
+              .mapToObj(
+                  index ->
+                      executor.submit(
+                          () -> lockFreeSut.getValue(CONFIGURATION.key(), DEV, Boolean.class)))
+              .toList();
+      for (var read : reads) {
+        assertThat(read.get()).contains(Boolean.FALSE);
+      }
+    }
+  }
+
+  @Test
+  public void itShouldProvideValueAsynchronously() throws Exception {
+    configurationManager.store(CONFIGURATION);
+    configurationManager.defineValue(CONFIGURATION.key(), DEV, OFF, Boolean.class);
+
+    var devValue = sut.getValueAsync(CONFIGURATION.key(), DEV, Boolean.class);
+    var prodValue = sut.getValueAsync(CONFIGURATION.key(), PROD, Boolean.class);
+    var unknownValue = sut.getValueAsync(new ConfigurationKey("not.stored"), Boolean.class);
+
+    assertThat(devValue.get(1, TimeUnit.SECONDS)).contains(Boolean.FALSE);
+    assertThat(prodValue.get(1, TimeUnit.SECONDS)).contains(Boolean.TRUE);
+    assertThat(unknownValue.get(1, TimeUnit.SECONDS)).isEmpty();
+  }
+
+  @Test
+  public void itShouldKeepHandleCurrent() throws Exception {
+    configurationManager.store(CONFIGURATION);
+    var handle = sut.handle(CONFIGURATION.key(), DEV, Boolean.class);
+    assertThat(handle.get()).contains(Boolean.TRUE);
+
+    configurationManager.defineValue(CONFIGURATION.key(), DEV, OFF, Boolean.class);
+
+    awaitUntil(() -> handle.get().equals(Optional.of(false)));
+    assertThat(handle.get()).contains(Boolean.FALSE);
+    assertThat(handle.key()).isEqualTo(CONFIGURATION.key());
+    assertThat(handle.environment()).isEqualTo(DEV);
+  }
+
+  @Test
+  public void itShouldStopRefreshingClosedHandle() throws Exception {
+    configurationManager.store(CONFIGURATION);
+    var metricsRecorder = new JmxMetricsRecorder();
+    var provider =
+        new ZookeeperConfigurationValueProvider(
+            zooKeeper, null, ValueProviderOptions.defaults().withMetricsRecorder(metricsRecorder));
+    var closed = provider.handle(CONFIGURATION.key(), DEV, Boolean.class);
+    var activeWatchers = metricsRecorder.getActiveWatchers();
+    var current = provider.handle(CONFIGURATION.key(), DEV, Boolean.class);
+
+    closed.close();
+    configurationManager.defineValue(CONFIGURATION.key(), DEV, OFF, Boolean.class);
+
+    awaitUntil(() -> current.get().equals(Optional.of(false)));
+    assertThat(current.get()).contains(Boolean.FALSE);
+    assertThat(closed.get()).contains(Boolean.TRUE);
+    assertThat(metricsRecorder.getActiveWatchers()).isEqualTo(activeWatchers);
+  }
+
+  @Test
+  public void itShouldProvideHandleWhenNotificationExecutorRejectsTasks() throws Exception {
+    configurationManager.store(CONFIGURATION);
+    var rejecting =
+        new ZookeeperConfigurationValueProvider(
+            zooKeeper,
+            null,
+            ValueProviderOptions.defaults()
+                .withNotificationExecutor(
+                    task -> {
+                      throw new RejectedExecutionException("saturated");
+                    }));
+
+    var handle = rejecting.handle(CONFIGURATION.key(), DEV, Boolean.class);
+    assertThat(handle.get()).contains(Boolean.TRUE);
+
+    configurationManager.defineValue(CONFIGURATION.key(), DEV, OFF, Boolean.class);
+
+    awaitUntil(() -> handle.get().equals(Optional.of(false)));
+    assertThat(handle.get()).contains(Boolean.FALSE);
+  }
+
+  @Test
+  public void itShouldProvideValuesOfSeveralKeysInOneBatch() throws Exception {
+    var otherConfiguration =
+        new Configuration<>(
+            new ConfigurationKey("my.app.awersome.tracing"),
+            "Tracing",
+            Collections.emptyMap(),
+            List.of(ON, OFF),
+            OFF);
+    configurationManager.store(CONFIGURATION);
+    configurationManager.store(otherConfiguration);
+    configurationManager.defineValue(CONFIGURATION.key(), DEV, OFF, Boolean.class);
+    var unknownKey = new ConfigurationKey("not.stored");
+
+    var actual =
+        sut.getValues(
+            List.of(CONFIGURATION.key(), otherConfiguration.key(), unknownKey), DEV, Boolean.class);
+
+    assertThat(actual)
+        .containsOnly(
+            entry(CONFIGURATION.key(), Optional.of(false)),
+            entry(otherConfiguration.key(), Optional.of(false)),
+            entry(unknownKey, Optional.empty()));
+  }
+
+  @Test
+  public void itShouldProvideValuesOfManyKeysInSeveralBatches() throws Exception {
+    configurationManager.store(CONFIGURATION);
+    var metricsRecorder = new JmxMetricsRecorder();
+    var provider =
+        new ZookeeperConfigurationValueProvider(
+            zooKeeper, null, ValueProviderOptions.defaults().withMetricsRecorder(metricsRecorder));
+    var keys = new ArrayList<ConfigurationKey>();
+    keys.add(CONFIGURATION.key());
+    IntStream.range(0, 199).forEach(index -> keys.add(new ConfigurationKey("not.stored" + index)));
+
+    var actual = provider.getValues(keys, DEV, Boolean.class);
+
+    assertThat(actual).hasSize(200).containsEntry(CONFIGURATION.key(), Optional.of(true));
+    assertThat(actual.values().stream().filter(Optional::isEmpty)).hasSize(199);
+    assertThat(metricsRecorder.getOperations().get("MULTI").getCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void itShouldNotDecodeUnchangedConfigurationAgain() throws Exception {
+    configurationManager.store(CONFIGURATION);
+    var countingMarshaller = new CountingDataMarshaller();
+    var provider = new ZookeeperConfigurationValueProvider(zooKeeper, countingMarshaller);
+
+    provider.getValue(CONFIGURATION.key(), Boolean.class);
+    provider.getValue(CONFIGURATION.key(), Boolean.class);
+    provider.getValues(List.of(CONFIGURATION.key()), null, Boolean.class);
+    assertThat(countingMarshaller.configurationDecodes).isEqualTo(1);
+
+    configurationManager.defineValue(CONFIGURATION.key(), OFF, Boolean.class);
+
+    assertThat(provider.getValue(CONFIGURATION.key(), Boolean.class)).contains(Boolean.FALSE);
+    assertThat(countingMarshaller.configurationDecodes).isEqualTo(1);
+    assertThat(countingMarshaller.entryDecodes).isEqualTo(2);
+  }
+
+  @Test
+  public void itShouldProvideValuesFromSnapshotWithoutZookeeper(@TempDir Path directory)
+      throws Exception {
+    configurationManager.store(CONFIGURATION);
+    configurationManager.defineValue(CONFIGURATION.key(), DEV, OFF, Boolean.class);
+    var options = ValueProviderOptions.defaults().withSnapshotFile(directory.resolve("snapshot"));
+    var provider = new ZookeeperConfigurationValueProvider(zooKeeper, null, options);
+    provider.getValue(CONFIGURATION.key(), DEV, Boolean.class);
+    provider.getValue(CONFIGURATION.key(), PROD, Boolean.class);
+    provider.writeSnapshot();
+    var unreachableZookeeper = ZookeeperProvider.provideAdditionalZookeeper();
+    unreachableZookeeper.close();
+
+    var restored = new ZookeeperConfigurationValueProvider(unreachableZookeeper, null, options);
+
+    assertThat(restored.getValue(CONFIGURATION.key(), DEV, Boolean.class)).contains(false);
+    assertThat(restored.getValue(CONFIGURATION.key(), PROD, Boolean.class)).contains(true);
+  }
+
+  @Test
+  public void itShouldWriteSnapshotWhenClosed(@TempDir Path directory) throws Exception {
+    configurationManager.store(CONFIGURATION);
+    var snapshotFile = directory.resolve("snapshot");
+    var options =
+        ValueProviderOptions.defaults()
+            .withSnapshotFile(snapshotFile)
+            .withSnapshotInterval(Duration.ofMillis(20));
+    var provider = new ZookeeperConfigurationValueProvider(zooKeeper, null, options);
+    provider.getValue(CONFIGURATION.key(), Boolean.class);
+
+    provider.close();
+
+    assertThat(NodeSnapshotFile.read(snapshotFile)).isNotEmpty();
+    Files.delete(snapshotFile);
+    Thread.sleep(200);
+    assertThat(snapshotFile).doesNotExist();
+  }
+
+  @Test
+  public void itShouldNotNotifyListenersOnceClosed() throws Exception {
+    configurationManager.store(CONFIGURATION);
+    var metricsRecorder = new JmxMetricsRecorder();
+    var options =
+        ValueProviderOptions.defaults()
+            .withCacheValues(true)
+            .withStoreNodesLocally(true)
+            .withMetricsRecorder(metricsRecorder);
+    var provider = new ZookeeperConfigurationValueProvider(zooKeeper, null, options);
+    var closedListener = new SpyListener(1);
+    provider.subscribeToValueChange(CONFIGURATION.key(), DEV, closedListener, Boolean.class);
+    provider.subscribeToPrefix(new ConfigurationKey("my.app"), closedListener, Boolean.class);
+    var handle = provider.handle(CONFIGURATION.key(), DEV, Boolean.class);
+    assertThat(provider.getValue(CONFIGURATION.key(), DEV, Boolean.class)).contains(true);
+    var openListener = new SpyListener(1);
+    sut.subscribeToValueChange(CONFIGURATION.key(), DEV, openListener, Boolean.class);
+
+    provider.close();
+    configurationManager.defineValue(CONFIGURATION.key(), DEV, OFF, Boolean.class);
+
+    openListener.await();
+    assertThat(openListener.changes).hasSize(1);
+    Thread.sleep(200);
+    assertThat(closedListener.changes).isEmpty();
+    assertThat(handle.get()).contains(true);
+    assertThat(metricsRecorder.getActiveWatchers()).isZero();
+    assertThatThrownBy(() -> provider.getValue(CONFIGURATION.key(), DEV, Boolean.class))
+        .isInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(
+            () ->
+                provider.subscribeToValueChange(CONFIGURATION.key(), closedListener, Boolean.class))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  public void itShouldReconcileSnapshotWithZookeeper(@TempDir Path directory) throws Exception {
+    configurationManager.store(CONFIGURATION);
+    var options =
+        ValueProviderOptions.defaults()
+            .withCacheValues(true)
+            .withSnapshotFile(directory.resolve("snapshot"));
+    var provider = new ZookeeperConfigurationValueProvider(zooKeeper, null, options);
+    provider.getValue(CONFIGURATION.key(), Boolean.class);
+    provider.writeSnapshot();
+    configurationManager.defineValue(CONFIGURATION.key(), OFF, Boolean.class);
+
+    var restored = new ZookeeperConfigurationValueProvider(zooKeeper, null, options);
+
+    awaitUntil(
+        () -> restored.getValue(CONFIGURATION.key(), Boolean.class).equals(Optional.of(false)));
+    assertThat(restored.getValue(CONFIGURATION.key(), Boolean.class)).contains(false);
+    configurationManager.defineValue(CONFIGURATION.key(), ON, Boolean.class);
+    awaitUntil(
+        () -> restored.getValue(CONFIGURATION.key(), Boolean.class).equals(Optional.of(true)));
+    assertThat(restored.getValue(CONFIGURATION.key(), Boolean.class)).contains(true);
+  }
+
+  @Test
+  public void itShouldIgnoreCorruptedSnapshot(@TempDir Path directory) throws Exception {
+    configurationManager.store(CONFIGURATION);
+    var snapshotFile = directory.resolve("snapshot");
+    Files.write(snapshotFile, new byte[] {0x41, 0x52, 0x54, 0x53, 1, 0, 0, 0, 5});
+    var options = ValueProviderOptions.defaults().withSnapshotFile(snapshotFile);
+
+    var provider = new ZookeeperConfigurationValueProvider(zooKeeper, null, options);
+
+    assertThat(provider.getValue(CONFIGURATION.key(), Boolean.class)).contains(true);
+  }
+
+  @Test
+  public void itShouldPrefetchConfigurationsUnderPrefix() throws Exception {
+    var tracing =
+        new Configuration<>(
+            new ConfigurationKey("my.app.tracing"), "Tracing", Map.of(), List.of(ON, OFF), OFF);
+    var outside =
+        new Configuration<>(
+            new ConfigurationKey("other.app.tracing"), "Tracing", Map.of(), List.of(ON, OFF), OFF);
+    configurationManager.store(CONFIGURATION);
+    configurationManager.store(tracing);
+    configurationManager.store(outside);
+    configurationManager.defineValue(CONFIGURATION.key(), DEV, OFF, Boolean.class);
+    var prefetchingZookeeper = ZookeeperProvider.provideAdditionalZookeeper();
+    var options = ValueProviderOptions.defaults().withStoreNodesLocally(true);
+    var provider = new ZookeeperConfigurationValueProvider(prefetchingZookeeper, null, options);
+
+    var actual = provider.prefetch(new ConfigurationKey("my.app"), Set.of(DEV));
+
+    assertThat(actual).isEqualTo(2);
+    prefetchingZookeeper.close();
+    assertThat(provider.getValue(CONFIGURATION.key(), DEV, Boolean.class)).contains(false);
+    assertThat(provider.getValue(CONFIGURATION.key(), Boolean.class)).contains(true);
+    assertThat(provider.getValue(tracing.key(), DEV, Boolean.class)).contains(false);
+    assertThatThrownBy(() -> provider.getValue(outside.key(), Boolean.class))
+        .isInstanceOf(RuntimeException.class);
+  }
+
+  @Test
+  public void itShouldNotifyChangesOfEveryConfigurationUnderPrefix() throws Exception {
+    var tracing =
+        new Configuration<>(
+            new ConfigurationKey("my.app.tracing"), "Tracing", Map.of(), List.of(ON, OFF), OFF);
+    var outside =
+        new Configuration<>(
+            new ConfigurationKey("other.app.tracing"), "Tracing", Map.of(), List.of(ON, OFF), OFF);
+    configurationManager.store(CONFIGURATION);
+    configurationManager.store(outside);
+
+    var spyListener = new SpyListener(3);
+    sut.subscribeToPrefix(new ConfigurationKey("my.app"), spyListener, Boolean.class);
+    configurationManager.defineValue(outside.key(), DEV, ON, Boolean.class);
+    configurationManager.defineValue(CONFIGURATION.key(), DEV, OFF, Boolean.class);
+    configurationManager.store(tracing);
+    configurationManager.defineValue(tracing.key(), DEV, ON, Boolean.class);
+
+    awaitUntil(() -> spyListener.changes.size() >= 3);
+    assertThat(spyListener.changes)
+        .containsExactlyInAnyOrder(
+            new Change<>(CONFIGURATION.key(), null, OFF),
+            new Change<>(tracing.key(), null, OFF),
+            new Change<>(tracing.key(), null, ON));
+    assertThat(spyListener.environments).containsExactlyInAnyOrder(DEV, null, DEV);
+  }
+
+  @Test
+  public void itShouldUnregisterPrefixSubscriptionWhenInitialScanFails() throws Exception {
+    configurationManager.store(CONFIGURATION);
+    var failingZookeeper = ZookeeperProvider.provideAdditionalZookeeper();
+    var metricsRecorder = new JmxMetricsRecorder();
+    var provider =
+        new ZookeeperConfigurationValueProvider(
+            failingZookeeper,
+            null,
+            ValueProviderOptions.defaults().withMetricsRecorder(metricsRecorder));
+    var spyListener = new SpyListener(1);
+    provider.subscribeToValueChange(CONFIGURATION.key(), spyListener, Boolean.class);
+    var activeWatchers = metricsRecorder.getActiveWatchers();
+    failingZookeeper.close();
+
+    assertThatThrownBy(
+            () ->
+                provider.subscribeToPrefix(
+                    new ConfigurationKey("my.app"), spyListener, Boolean.class))
+        .isInstanceOf(ZookeeperClient.ZooKeeperClientException.class);
+    assertThat(metricsRecorder.getActiveWatchers()).isEqualTo(activeWatchers);
+  }
+
+  @Test
+  public void itShouldResolveValueAlongEnvironmentChain() throws Exception {
+    var prodEu = new Environment("prodeu");
+    var cachingProvider =
+        new ZookeeperConfigurationValueProvider(
+            zooKeeper, null, ValueProviderOptions.defaults().withCacheValues(true));
+    configurationManager.store(CONFIGURATION);
+    configurationManager.defineValue(CONFIGURATION.key(), PROD, OFF, Boolean.class);
+
+    assertThat(sut.getValueWithFallback(CONFIGURATION.key(), List.of(prodEu, PROD), Boolean.class))
+        .contains(false);
+    assertThat(sut.getValueWithFallback(CONFIGURATION.key(), List.of(prodEu, DEV), Boolean.class))
+        .contains(true);
+    assertThat(
+            cachingProvider.getValueWithFallback(
+                CONFIGURATION.key(), List.of(prodEu, PROD), Boolean.class))
+        .contains(false);
+
+    configurationManager.defineValue(CONFIGURATION.key(), prodEu, ON, Boolean.class);
+
+    awaitUntil(
+        () ->
+            cachingProvider
+                .getValueWithFallback(CONFIGURATION.key(), List.of(prodEu, PROD), Boolean.class)
+                .orElseThrow());
+    assertThat(
+            cachingProvider.getValueWithFallback(
+                CONFIGURATION.key(), List.of(prodEu, PROD), Boolean.class))
+        .contains(true);
+    assertThat(
+            sut.getValueWithFallback(
+                new ConfigurationKey("not.stored"), List.of(prodEu, PROD), Boolean.class))
+        .isEmpty();
+  }
+
+  @Test
+  public void itShouldRecordOperationsOfCachedRead() throws Exception {
+    configurationManager.store(CONFIGURATION);
+    var metricsRecorder = new JmxMetricsRecorder();
+    var provider =
+        new ZookeeperConfigurationValueProvider(
+            zooKeeper,
+            null,
+            ValueProviderOptions.defaults()
+                .withCacheValues(true)
+                .withMetricsRecorder(metricsRecorder));
+    var objectName = metricsRecorder.register("provider-test");
+
+    provider.getValue(CONFIGURATION.key(), Boolean.class);
+    provider.getValue(CONFIGURATION.key(), Boolean.class);
+
+    try {
+      var operations = metricsRecorder.getOperations();
+      assertThat(operations.get("EXISTS").getCount()).isEqualTo(3);
+      assertThat(operations.get("GET_DATA").getCount()).isEqualTo(2);
+      assertThat(operations.get("SET_DATA").getCount()).isZero();
+      assertThat(metricsRecorder.getMarshalling().get("DECODE").getCount()).isEqualTo(2);
+      assertThat(metricsRecorder.getLockWait().getCount()).isEqualTo(1);
+      assertThat(
+              ManagementFactory.getPlatformMBeanServer()
+                  .getAttribute(objectName, "ActiveWatchers"))
+          .isEqualTo(3);
+    } finally {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    }
+  }
+
+  @Test
+  public void itShouldReadValueInTwoRoundTripsWithDirectRequests() throws Exception {
+    configurationManager.store(CONFIGURATION);
+    configurationManager.defineValue(CONFIGURATION.key(), DEV, OFF, Boolean.class);
+    var checkingRecorder = new JmxMetricsRecorder();
+    var checkingProvider =
+        new ZookeeperConfigurationValueProvider(
+            zooKeeper, null, ValueProviderOptions.defaults().withMetricsRecorder(checkingRecorder));
+    var directRecorder = new JmxMetricsRecorder();
+    var directProvider =
+        new ZookeeperConfigurationValueProvider(
+            zooKeeper,
+            null,
+            ValueProviderOptions.defaults()
+                .withDirectRequests(true)
+                .withMetricsRecorder(directRecorder));
+
+    assertThat(checkingProvider.getValue(CONFIGURATION.key(), DEV, Boolean.class)).contains(false);
+    assertThat(directProvider.getValue(CONFIGURATION.key(), DEV, Boolean.class)).contains(false);
+
+    assertThat(operationCount(checkingRecorder)).isEqualTo(5);
+    assertThat(operationCount(directRecorder)).isEqualTo(2);
+    assertThat(directProvider.getValue(CONFIGURATION.key(), PROD, Boolean.class)).contains(true);
+    assertThat(directProvider.getValue(new ConfigurationKey("not.stored"), Boolean.class))
+        .isEmpty();
+  }
+
+  private static long operationCount(JmxMetricsRecorder metricsRecorder) {
+    return metricsRecorder.getOperations().values().stream()
+        .mapToLong(LatencySnapshot::getCount)
+        .sum();
+  }
+
+  private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+    var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+    while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+
   private record Change<T>(
       ConfigurationKey key, ConfigurationEntry<T> previous, ConfigurationEntry<T> current) {}
 
   private static class SpyListener implements ValueChangeListener {
 
-    private final List<Change<?>> changes = new ArrayList<>();
+    private final List<Change<?>> changes = new CopyOnWriteArrayList<>();
+
+    private final List<Environment> environments = new CopyOnWriteArrayList<>();
 
     private final List<CountDownLatch> countDownLatchs;
 
@@ -145,6 +728,16 @@ class ZookeeperConfigurationValueProviderTest implements ConfigurationFixture {
       countDownLatchs.forEach(CountDownLatch::countDown);
     }
 
+    @Override
+    public <T> void valueChange(
+        ConfigurationKey key,
+        Environment environment,
+        ConfigurationEntry<T> previous,
+        ConfigurationEntry<T> current) {
+      environments.add(environment);
+      valueChange(key, previous, current);
+    }
+
     public void await() throws InterruptedException {
       initialLatch.await(1, TimeUnit.SECONDS);
     }
@@ -155,4 +748,35 @@ class ZookeeperConfigurationValueProviderTest implements ConfigurationFixture {
       specLatch.await(1, TimeUnit.SECONDS);
     }
   }
+
+  private static class CountingDataMarshaller implements DataMarshaller {
+
+    private final DataMarshaller delegate = new JsonDataMarshaller();
+
+    private int configurationDecodes;
+
+    private int entryDecodes;
+
+    @Override
+    public <T> Configuration<T> configurationFromByteArray(byte[] data, Class<T> tClass) {
+      configurationDecodes++;
+      return delegate.configurationFromByteArray(data, tClass);
+    }
+
+    @Override
+    public <T> ConfigurationEntry<T> configurationEntryFromByteArray(byte[] data, Class<T> tClass) {
+      entryDecodes++;
+      return delegate.configurationEntryFromByteArray(data, tClass);
+    }
+
+    @Override
+    public <T> byte[] toByteArray(Configuration<T> configuration) {
+      return delegate.toByteArray(configuration);
+    }
+
+    @Override
+    public <T> byte[] toByteArray(ConfigurationEntry<T> configurationEntry) {
+      return delegate.toByteArray(configurationEntry);
+    }
+  }
 }
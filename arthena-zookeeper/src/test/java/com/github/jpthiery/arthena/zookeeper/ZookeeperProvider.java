@@ -48,18 +48,7 @@ public class ZookeeperProvider implements ParameterResolver, AfterEachCallback {
     try {
       if (ZOOKEEPER == null) {
         startZkServer();
-        var latch = new CountDownLatch(1);
-        var connectionString = "localhost:" + ZK_PORT;
-        ZOOKEEPER =
-            new ZooKeeper(
-                connectionString,
-                2000,
-                event -> {
-                  if (event.getState() == Watcher.Event.KeeperState.SyncConnected) {
-                    latch.countDown();
-                  }
-                });
-        latch.await(5, TimeUnit.SECONDS);
+        ZOOKEEPER = connect();
         LOGGER.info("Zookeeper client created");
       }
       return ZOOKEEPER;
@@ -70,6 +59,34 @@ public class ZookeeperProvider implements ParameterResolver, AfterEachCallback {
     }
   }
 
+  /** Open an additional client on the running testing server, caller is in charge to close it. */
+  public static ZooKeeper provideAdditionalZookeeper() {
+    LOCK.lock();
+    try {
+      return connect();
+    } catch (InterruptedException | IOException e) {
+      throw new RuntimeException("Unable to create a Zookeeper client", e);
+    } finally {
+      LOCK.unlock();
+    }
+  }
+
+  private static ZooKeeper connect() throws IOException, InterruptedException {
+    var latch = new CountDownLatch(1);
+    var connectionString = "localhost:" + ZK_PORT;
+    var zooKeeper =
+        new ZooKeeper(
+            connectionString,
+            2000,
+            event -> {
+              if (event.getState() == Watcher.Event.KeeperState.SyncConnected) {
+                latch.countDown();
+              }
+            });
+    latch.await(5, TimeUnit.SECONDS);
+    return zooKeeper;
+  }
+
   private Optional<String> getDefinedZookeeperUrl() {
     var testZookeeperUrl = System.getenv("TEST_ZOOKEEPER_URL");
     if (testZookeeperUrl != null && !testZookeeperUrl.isBlank()) {
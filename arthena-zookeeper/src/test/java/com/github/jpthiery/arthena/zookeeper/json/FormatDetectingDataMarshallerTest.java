@@ -0,0 +1,59 @@
+package com.github.jpthiery.arthena.zookeeper.json;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.jpthiery.arthena.domain.Configuration;
+import com.github.jpthiery.arthena.domain.ConfigurationEntry;
+import com.github.jpthiery.arthena.domain.ConfigurationKey;
+import com.github.jpthiery.arthena.zookeeper.json.FormatDetectingDataMarshaller.Format;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class FormatDetectingDataMarshallerTest {
+
+  private static final ConfigurationEntry<Integer> SMALL =
+      new ConfigurationEntry<>("small", 10, "Small pool");
+
+  private static final ConfigurationEntry<Integer> LARGE =
+      new ConfigurationEntry<>("large", 200, "Large pool");
+
+  private static final Configuration<Integer> CONFIGURATION =
+      new Configuration<>(
+          new ConfigurationKey("my.app.pool"),
+          "Pool size",
+          Map.of("owner", "team"),
+          List.of(SMALL, LARGE),
+          SMALL);
+
+  @Test
+  public void itShouldReadJsonAndSmilePayloads() {
+    var sut = new FormatDetectingDataMarshaller(Format.SMILE);
+
+    assertThat(
+            sut.configurationFromByteArray(
+                new JsonDataMarshaller().toByteArray(CONFIGURATION), Integer.class))
+        .isEqualTo(CONFIGURATION);
+    assertThat(
+            sut.configurationFromByteArray(
+                new SmileDataMarshaller().toByteArray(CONFIGURATION), Integer.class))
+        .isEqualTo(CONFIGURATION);
+    assertThat(
+            sut.configurationEntryFromByteArray(
+                new StreamingJsonDataMarshaller().toByteArray(LARGE), Integer.class))
+        .isEqualTo(LARGE);
+  }
+
+  @Test
+  public void itShouldWriteInChosenFormat() {
+    var smile = new FormatDetectingDataMarshaller(Format.SMILE).toByteArray(CONFIGURATION);
+    var json = new FormatDetectingDataMarshaller(Format.JSON).toByteArray(CONFIGURATION);
+
+    assertThat(smile).startsWith(':', ')', '\n');
+    assertThat(smile.length).isLessThan(json.length);
+    assertThat(new SmileDataMarshaller().configurationFromByteArray(smile, Integer.class))
+        .isEqualTo(CONFIGURATION);
+    assertThat(new JsonDataMarshaller().configurationFromByteArray(json, Integer.class))
+        .isEqualTo(CONFIGURATION);
+  }
+}
@@ -0,0 +1,84 @@
+package com.github.jpthiery.arthena.zookeeper.json;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.jpthiery.arthena.domain.Configuration;
+import com.github.jpthiery.arthena.domain.ConfigurationEntry;
+import com.github.jpthiery.arthena.domain.ConfigurationKey;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class StreamingJsonDataMarshallerTest {
+
+  enum Level {
+    DEBUG,
+    INFO
+  }
+
+  private static final ConfigurationEntry<Level> DEBUG =
+      new ConfigurationEntry<>("debug", Level.DEBUG, "Verbose");
+
+  private static final ConfigurationEntry<Level> INFO =
+      new ConfigurationEntry<>("info", Level.INFO, "Quiet");
+
+  private static final Configuration<Level> CONFIGURATION =
+      new Configuration<>(
+          new ConfigurationKey("my.app.level"),
+          "Level",
+          Map.of("owner", "team"),
+          List.of(DEBUG, INFO),
+          INFO);
+
+  private final StreamingJsonDataMarshaller sut = new StreamingJsonDataMarshaller();
+
+  @Test
+  public void itShouldReadDataWrittenByJsonDataMarshaller() {
+    var jsonDataMarshaller = new JsonDataMarshaller();
+
+    assertThat(
+            sut.configurationFromByteArray(
+                jsonDataMarshaller.toByteArray(CONFIGURATION), Level.class))
+        .isEqualTo(CONFIGURATION);
+    assertThat(
+            sut.configurationEntryFromByteArray(jsonDataMarshaller.toByteArray(DEBUG), Level.class))
+        .isEqualTo(DEBUG);
+  }
+
+  @Test
+  public void itShouldWriteDataReadableByJsonDataMarshaller() {
+    var jsonDataMarshaller = new JsonDataMarshaller();
+
+    assertThat(
+            jsonDataMarshaller.configurationFromByteArray(
+                sut.toByteArray(CONFIGURATION), Level.class))
+        .isEqualTo(CONFIGURATION);
+    assertThat(
+            jsonDataMarshaller.configurationEntryFromByteArray(
+                sut.toByteArray(DEBUG), Level.class))
+        .isEqualTo(DEBUG);
+  }
+
+  @Test
+  public void itShouldWriteCompactJson() {
+    assertThat(new String(sut.toByteArray(DEBUG), StandardCharsets.UTF_8))
+        .isEqualTo("{\"name\":\"debug\",\"value\":\"DEBUG\",\"description\":\"Verbose\"}");
+  }
+
+  @Test
+  public void itShouldIgnoreUnknownFields() {
+    var data =
+        "{\"name\":\"on\",\"extra\":{\"a\":[1,2]},\"value\":true,\"description\":\"On\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    assertThat(sut.configurationEntryFromByteArray(data, Boolean.class))
+        .isEqualTo(new ConfigurationEntry<>("on", Boolean.TRUE, "On"));
+  }
+
+  @Test
+  public void itShouldReadEmptyDataAsNull() {
+    assertThat(sut.configurationFromByteArray(new byte[0], Level.class)).isNull();
+    assertThat(sut.configurationEntryFromByteArray(new byte[0], Level.class)).isNull();
+  }
+}